@@ -0,0 +1,47 @@
+package pet.store.benchmark;
+
+import pet.store.entity.Customer;
+import pet.store.entity.Employee;
+import pet.store.entity.PetStore;
+
+/*
+ * Builds the in-memory test data shared by the benchmarks: a pet store with the given number of
+ * customers and the same number of employees. No database is used.
+ */
+final class BenchmarkData {
+
+  private BenchmarkData() {}
+
+  static PetStore petStore(int size) {
+    PetStore petStore = new PetStore();
+    petStore.setPetStoreId(1L);
+    petStore.setPetStoreName("Benchmark Pets");
+    petStore.setPetStoreAddress("1 Main Street");
+    petStore.setPetStoreCity("Denver");
+    petStore.setPetStoreState("CO");
+    petStore.setPetStoreZip("80202");
+    petStore.setPetStorePhone("303-555-0100");
+
+    for (long i = 1; i <= size; i++) {
+      Customer customer = new Customer();
+      customer.setCustomerId(i);
+      customer.setCustomerFirstName("First" + i);
+      customer.setCustomerLastName("Last" + i);
+      customer.setCustomerEmail("customer" + i + "@example.com");
+      customer.getPetStore().add(petStore);
+      petStore.getCustomers().add(customer);
+
+      Employee employee = new Employee();
+      employee.setEmployeeId(i);
+      employee.setEmployeeFirstName("First" + i);
+      employee.setEmployeeLastName("Last" + i);
+      employee.setEmployeePhone("303-555-" + i);
+      employee.setEmployeeJobTitle(i % 10 == 0 ? "Manager" : "Associate");
+      employee.setPetStore(petStore);
+      petStore.getEmployees().add(employee);
+    }
+
+    return petStore;
+  }
+
+}
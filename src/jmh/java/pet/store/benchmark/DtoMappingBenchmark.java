@@ -0,0 +1,66 @@
+package pet.store.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import pet.store.controller.model.PetStoreCustomer;
+import pet.store.controller.model.PetStoreData;
+import pet.store.controller.model.PetStoreEmployee;
+import pet.store.entity.Customer;
+import pet.store.entity.Employee;
+import pet.store.entity.PetStore;
+
+/*
+ * Measures the entity to DTO mapping: the full PetStoreData(PetStore) conversion and the
+ * PetStoreCustomer and PetStoreEmployee conversions on their own. size is the number of customers
+ * and the number of employees in the pet store. Run with -prof gc (the default jmh.args) to see
+ * the bytes allocated per operation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DtoMappingBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  private int size;
+
+  private PetStore petStore;
+
+  @Setup
+  public void setUp() {
+    petStore = BenchmarkData.petStore(size);
+  }
+
+  @Benchmark
+  public PetStoreData petStoreData() {
+    return new PetStoreData(petStore);
+  }
+
+  @Benchmark
+  public void petStoreCustomers(Blackhole blackhole) {
+    for (Customer customer : petStore.getCustomers()) {
+      blackhole.consume(new PetStoreCustomer(customer));
+    }
+  }
+
+  @Benchmark
+  public void petStoreEmployees(Blackhole blackhole) {
+    for (Employee employee : petStore.getEmployees()) {
+      blackhole.consume(new PetStoreEmployee(employee));
+    }
+  }
+
+}
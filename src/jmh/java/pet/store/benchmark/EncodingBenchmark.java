@@ -0,0 +1,89 @@
+package pet.store.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pet.store.controller.model.PetStoreData;
+
+/*
+ * Compares the response encodings of PetStoreData: JSON, Smile and CBOR, each with and without
+ * gzip. The ObjectMapper of each format is built the same way Spring builds the one of its message
+ * converter, and gzip uses the default deflate level, as Tomcat's response compression does.
+ * 
+ * The score is the time to encode one pet store. The wireBytes counter is the size of the encoded
+ * (and compressed) body, i.e. what is sent to the client.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EncodingBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  private int size;
+
+  @Param({"json", "smile", "cbor"})
+  private String format;
+
+  @Param({"false", "true"})
+  private boolean gzip;
+
+  private ObjectMapper objectMapper;
+  private PetStoreData petStoreData;
+
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class WireSize {
+    public long wireBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      wireBytes = 0;
+    }
+  }
+
+  @Setup
+  public void setUp() {
+    objectMapper = switch (format) {
+      case "smile" -> Jackson2ObjectMapperBuilder.smile().build();
+      case "cbor" -> Jackson2ObjectMapperBuilder.cbor().build();
+      default -> Jackson2ObjectMapperBuilder.json().build();
+    };
+    petStoreData = new PetStoreData(BenchmarkData.petStore(size));
+  }
+
+  @Benchmark
+  public byte[] encode(WireSize wireSize) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    if (gzip) {
+      try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+        objectMapper.writeValue(out, petStoreData);
+      }
+    } else {
+      objectMapper.writeValue(bytes, petStoreData);
+    }
+
+    wireSize.wireBytes = bytes.size();
+    return bytes.toByteArray();
+  }
+
+}
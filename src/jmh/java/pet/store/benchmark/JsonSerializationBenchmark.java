@@ -0,0 +1,59 @@
+package pet.store.benchmark;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pet.store.controller.model.PetStoreData;
+import pet.store.entity.PetStore;
+
+/*
+ * Measures JSON serialization of PetStoreData with an ObjectMapper built the same way Spring
+ * builds the one used for responses. serialize only writes an already mapped PetStoreData, while
+ * mapAndSerialize also includes the entity to DTO mapping, as a GET /pet_store/{petStoreId}
+ * request does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+
+  @Param({"10", "1000", "100000"})
+  private int size;
+
+  private ObjectMapper objectMapper;
+  private PetStore petStore;
+  private PetStoreData petStoreData;
+
+  @Setup
+  public void setUp() {
+    objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    petStore = BenchmarkData.petStore(size);
+    petStoreData = new PetStoreData(petStore);
+  }
+
+  @Benchmark
+  public byte[] serialize() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(petStoreData);
+  }
+
+  @Benchmark
+  public byte[] mapAndSerialize() throws JsonProcessingException {
+    return objectMapper.writeValueAsBytes(new PetStoreData(petStore));
+  }
+
+}
@@ -0,0 +1,154 @@
+package pet.store.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pet.store.PetStoreApplication;
+
+/*
+ * Employee insert benchmark. Compares the rows per second of adding employees one at a time with
+ * POST /pet_store/{petStoreId}/employee and in batches with POST /pet_store/{petStoreId}/employees.
+ * Run it with:
+ * mvn -Ploadtest test-compile exec:exec@employee-insert
+ * 
+ * The application is started in the same JVM with the local profile (in-memory H2), like the load
+ * test. Each run adds the given number of employees to a new pet store, first through the single
+ * item endpoint and then through the batch endpoint, one request after the other. The first run
+ * warms up the JVM and is not counted.
+ * 
+ * Options: --employees=2000 (per run and endpoint), --batch-size=1000 (employees per batch
+ * request, at most 10000), --runs=5
+ */
+public final class EmployeeInsertBenchmark {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private EmployeeInsertBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = options(args);
+    int employees = Integer.parseInt(options.getOrDefault("employees", "2000"));
+    int batchSize = Integer.parseInt(options.getOrDefault("batch-size", "1000"));
+    int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+
+    try (ConfigurableApplicationContext context =
+        new SpringApplicationBuilder(PetStoreApplication.class).profiles("local")
+            .properties("server.port=0", "logging.level.root=WARN",
+                "pet-store.admission.client-rate=0")
+            .run()) {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      URI baseUri = URI.create("http://localhost:" + port);
+      HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+      Random random = new Random(1);
+      List<Double> singleRates = new ArrayList<>();
+      List<Double> batchRates = new ArrayList<>();
+
+      for (int run = 0; run <= runs; run++) {
+        URI singleUri = baseUri.resolve(
+            "/pet_store/" + createPetStore(client, baseUri, random) + "/employee");
+        URI batchUri = baseUri.resolve(
+            "/pet_store/" + createPetStore(client, baseUri, random) + "/employees");
+
+        double single = rowsPerSecond(employees, () -> {
+          for (int i = 0; i < employees; i++) {
+            post(client, singleUri, LoadTest.employeeJson(i));
+          }
+        });
+
+        double batch = rowsPerSecond(employees, () -> {
+          for (int i = 0; i < employees; i += batchSize) {
+            post(client, batchUri, LoadTest.employeesJson(Math.min(batchSize, employees - i), i));
+          }
+        });
+
+        if (run == 0) {
+          System.out.printf("warmup: single %.0f rows/s, batch %.0f rows/s%n", single, batch);
+          continue;
+        }
+        singleRates.add(single);
+        batchRates.add(batch);
+        System.out.printf("run %d: single %.0f rows/s, batch %.0f rows/s%n", run, single, batch);
+      }
+
+      System.out.printf("%-8s %10s %10s %10s%n", "endpoint", "min rows/s", "median", "max");
+      print("single", singleRates);
+      print("batch", batchRates);
+      System.out.printf("The batch endpoint is %.1f times as fast (medians)%n",
+          median(batchRates) / median(singleRates));
+    }
+
+    System.exit(0);
+  }
+
+  private interface Inserts {
+    void run() throws IOException, InterruptedException;
+  }
+
+  private static double rowsPerSecond(int rows, Inserts inserts)
+      throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    inserts.run();
+    return rows * 1_000_000_000.0 / (System.nanoTime() - start);
+  }
+
+  private static long createPetStore(HttpClient client, URI baseUri, Random random)
+      throws IOException, InterruptedException {
+    return OBJECT_MAPPER.readTree(
+        post(client, baseUri.resolve("/pet_store"), LoadTest.petStoreJson(random)))
+        .get("petStoreId").asLong();
+  }
+
+  private static String post(HttpClient client, URI uri, String json)
+      throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(uri).header("Content-Type", "application/json")
+        .POST(BodyPublishers.ofString(json)).build();
+    HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
+
+    if (response.statusCode() >= 400) {
+      throw new IllegalStateException(
+          "POST " + uri + " returned " + response.statusCode() + " " + response.body());
+    }
+    return response.body();
+  }
+
+  private static double median(List<Double> rates) {
+    List<Double> sorted = new ArrayList<>(rates);
+    Collections.sort(sorted);
+    return sorted.get(sorted.size() / 2);
+  }
+
+  private static void print(String endpoint, List<Double> rates) {
+    List<Double> sorted = new ArrayList<>(rates);
+    Collections.sort(sorted);
+    System.out.printf("%-8s %10.0f %10.0f %10.0f%n", endpoint, sorted.get(0), median(sorted),
+        sorted.get(sorted.size() - 1));
+  }
+
+  private static Map<String, String> options(String[] args) {
+    Map<String, String> values = new HashMap<>();
+
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      int equals = arg.indexOf('=');
+      values.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    return values;
+  }
+
+}
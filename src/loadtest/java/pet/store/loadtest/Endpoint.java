@@ -0,0 +1,210 @@
+package pet.store.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.util.Random;
+import java.util.function.Consumer;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/*
+ * The PetStoreController endpoints driven by the load test, each with its default weight in the
+ * request mix. call() builds the next request for the endpoint and, for endpoints that create
+ * something, what to remember from a successful response. It returns null when the endpoint has
+ * nothing to work on yet (for example no pet store created during the run to delete); that
+ * arrival is then skipped.
+ * 
+ * The export is left out of the default mix (weight 0) because one export reads the whole
+ * database; give it a weight with --mix=export:1 to include it.
+ */
+enum Endpoint {
+
+  LIST(10) {
+    @Override
+    Call call(Context context) {
+      long after = context.random().nextLong(Math.max(1, context.data().maxPetStoreId()));
+      return context.get("/pet_store?limit=20&after=" + after);
+    }
+  },
+
+  GET(30) {
+    @Override
+    Call call(Context context) {
+      return context.get("/pet_store/" + context.data().petStoreId(context.random()));
+    }
+  },
+
+  SEARCH_CUSTOMER(5) {
+    @Override
+    Call call(Context context) {
+      return context.get("/pet_store/customer?lastName=Last" + context.random().nextInt(10));
+    }
+  },
+
+  SEARCH_EMPLOYEE(5) {
+    @Override
+    Call call(Context context) {
+      return context.get("/pet_store/employee?jobTitle=Man&petStoreId="
+          + context.data().petStoreId(context.random()));
+    }
+  },
+
+  CREATE_STORE(2) {
+    @Override
+    Call call(Context context) {
+      return context.send("POST", "/pet_store", LoadTest.petStoreJson(context.random()),
+          body -> context.data().createdPetStoreIds.add(body.get("petStoreId").asLong()));
+    }
+  },
+
+  UPDATE_STORE(5) {
+    @Override
+    Call call(Context context) {
+      return context.send("PUT", "/pet_store/" + context.data().petStoreId(context.random()),
+          LoadTest.petStoreJson(context.random()), null);
+    }
+  },
+
+  PATCH_STORE(5) {
+    @Override
+    Call call(Context context) {
+      return context.send("PATCH", "/pet_store/" + context.data().petStoreId(context.random()),
+          "{\"petStorePhone\":\"303-555-" + context.random().nextInt(10_000) + "\"}", null);
+    }
+  },
+
+  PATCH_EMPLOYEE(3) {
+    @Override
+    Call call(Context context) {
+      long petStoreId = context.data().petStoreId(context.random());
+      long employeeId = context.data().employeeId(petStoreId, context.random());
+
+      if (employeeId < 0) {
+        return null;
+      }
+      return context.send("PATCH", "/pet_store/" + petStoreId + "/employee/" + employeeId,
+          "{\"employeePhone\":\"303-555-" + context.random().nextInt(10_000) + "\"}", null);
+    }
+  },
+
+  PATCH_CUSTOMER(3) {
+    @Override
+    Call call(Context context) {
+      long petStoreId = context.data().petStoreId(context.random());
+      long customerId = context.data().customerId(petStoreId, context.random());
+
+      if (customerId < 0) {
+        return null;
+      }
+      return context.send("PATCH", "/pet_store/" + petStoreId + "/customer/" + customerId,
+          "{\"customerLastName\":\"Last" + context.random().nextInt(10_000) + "\"}", null);
+    }
+  },
+
+  ADD_EMPLOYEE(5) {
+    @Override
+    Call call(Context context) {
+      return context.send("POST",
+          "/pet_store/" + context.data().petStoreId(context.random()) + "/employee",
+          LoadTest.employeeJson(context.random().nextInt(10_000)), null);
+    }
+  },
+
+  ADD_EMPLOYEES(2) {
+    @Override
+    Call call(Context context) {
+      return context.send("POST",
+          "/pet_store/" + context.data().petStoreId(context.random()) + "/employees",
+          LoadTest.employeesJson(10, context.random().nextInt(10_000)), null);
+    }
+  },
+
+  ADD_CUSTOMER(5) {
+    @Override
+    Call call(Context context) {
+      long petStoreId = context.data().petStoreId(context.random());
+      return context.send("POST", "/pet_store/" + petStoreId + "/customer",
+          LoadTest.customerJson(context.random().nextInt(10_000)),
+          body -> context.data().addedCustomers.add(
+              new LoadTestData.StoreCustomer(petStoreId, body.get("customerId").asLong())));
+    }
+  },
+
+  REMOVE_CUSTOMER(3) {
+    @Override
+    Call call(Context context) {
+      LoadTestData.StoreCustomer added = context.data().addedCustomers.poll();
+
+      if (added == null) {
+        return null;
+      }
+      return context.send("DELETE",
+          "/pet_store/" + added.petStoreId() + "/customer/" + added.customerId(), null, null);
+    }
+  },
+
+  DELETE_STORE(1) {
+    @Override
+    Call call(Context context) {
+      Long petStoreId = context.data().createdPetStoreIds.poll();
+
+      if (petStoreId == null) {
+        return null;
+      }
+      return context.send("DELETE", "/pet_store/" + petStoreId + "?async=true", null,
+          body -> context.data().deleteJobIds.add(body.get("jobId").asText()));
+    }
+  },
+
+  DELETE_JOB(1) {
+    @Override
+    Call call(Context context) {
+      String jobId = context.data().deleteJobIds.poll();
+      return jobId == null ? null : context.get("/pet_store/delete_job/" + jobId);
+    }
+  },
+
+  EXPORT(0) {
+    @Override
+    Call call(Context context) {
+      return context.get("/pet_store/export");
+    }
+  };
+
+  // A request and what to do with the JSON body of a successful response (may be null).
+  record Call(HttpRequest request, Consumer<JsonNode> onSuccess) {
+  }
+
+  // Everything call() needs. The random is only used on the thread that schedules the arrivals.
+  record Context(URI baseUri, LoadTestData data, Random random) {
+
+    Call get(String path) {
+      return new Call(HttpRequest.newBuilder(baseUri.resolve(path)).GET().build(), null);
+    }
+
+    Call send(String method, String path, String json, Consumer<JsonNode> onSuccess) {
+      HttpRequest.Builder builder = HttpRequest.newBuilder(baseUri.resolve(path));
+
+      if (json == null) {
+        builder.method(method, BodyPublishers.noBody());
+      } else {
+        builder.header("Content-Type", "application/json")
+            .method(method, BodyPublishers.ofString(json));
+      }
+      return new Call(builder.build(), onSuccess);
+    }
+  }
+
+  private final int defaultWeight;
+
+  Endpoint(int defaultWeight) {
+    this.defaultWeight = defaultWeight;
+  }
+
+  int defaultWeight() {
+    return defaultWeight;
+  }
+
+  abstract Call call(Context context);
+
+}
@@ -0,0 +1,143 @@
+package pet.store.loadtest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Latency and throughput per endpoint for the measured part of a run.
+ * 
+ * Latencies are recorded in microseconds in an HdrHistogram per endpoint, measured from the time
+ * the request was scheduled to arrive, not from when it was sent. A slow server therefore shows up
+ * in the latencies instead of quietly lowering the request rate (coordinated omission).
+ * 
+ * The JSON report has one entry per endpoint with count, errors, throughput (requests per
+ * second), p50Millis, p99Millis and maxMillis, plus the total over all endpoints.
+ */
+final class LatencyReport {
+
+  private final Map<Endpoint, Histogram> histograms = new EnumMap<>(Endpoint.class);
+  private final Map<Endpoint, LongAdder> errors = new EnumMap<>(Endpoint.class);
+  private final LongAdder dropped = new LongAdder();
+
+  LatencyReport() {
+    for (Endpoint endpoint : Endpoint.values()) {
+      histograms.put(endpoint, new ConcurrentHistogram(3));
+      errors.put(endpoint, new LongAdder());
+    }
+  }
+
+  void record(Endpoint endpoint, long latencyNanos, boolean error) {
+    histograms.get(endpoint).recordValue(Math.max(1, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+
+    if (error) {
+      errors.get(endpoint).increment();
+    }
+  }
+
+  // Counts an arrival that was not sent because too many requests were already outstanding.
+  void drop() {
+    dropped.increment();
+  }
+
+  Map<String, Object> toJson(double seconds, double targetRate) {
+    Map<String, Object> endpoints = new LinkedHashMap<>();
+    Histogram total = new Histogram(3);
+    long totalErrors = 0;
+
+    for (Endpoint endpoint : Endpoint.values()) {
+      Histogram histogram = histograms.get(endpoint);
+
+      if (histogram.getTotalCount() > 0) {
+        long endpointErrors = errors.get(endpoint).sum();
+        endpoints.put(endpoint.name().toLowerCase(), summary(histogram, endpointErrors, seconds));
+        total.add(histogram);
+        totalErrors += endpointErrors;
+      }
+    }
+
+    Map<String, Object> report = new LinkedHashMap<>();
+    report.put("durationSeconds", seconds);
+    report.put("targetRate", targetRate);
+    report.put("dropped", dropped.sum());
+    report.put("total", summary(total, totalErrors, seconds));
+    report.put("endpoints", endpoints);
+    return report;
+  }
+
+  private static Map<String, Object> summary(Histogram histogram, long errors, double seconds) {
+    Map<String, Object> summary = new LinkedHashMap<>();
+    summary.put("count", histogram.getTotalCount());
+    summary.put("errors", errors);
+    summary.put("throughput", round(histogram.getTotalCount() / seconds));
+    summary.put("p50Millis", millis(histogram.getValueAtPercentile(50)));
+    summary.put("p99Millis", millis(histogram.getValueAtPercentile(99)));
+    summary.put("maxMillis", millis(histogram.getMaxValue()));
+    return summary;
+  }
+
+  private static double millis(long micros) {
+    return round(micros / 1000.0);
+  }
+
+  private static double round(double value) {
+    return Math.round(value * 100) / 100.0;
+  }
+
+  static void write(Map<String, Object> report, Path path, ObjectMapper objectMapper)
+      throws IOException {
+    if (path.getParent() != null) {
+      Files.createDirectories(path.getParent());
+    }
+    objectMapper.writerWithDefaultPrettyPrinter().writeValue(path.toFile(), report);
+  }
+
+  /*
+   * Compares a report with a baseline report and returns one message per regression: a p50 or p99
+   * more than tolerance percent above the baseline, or a throughput more than tolerance percent
+   * below it. Endpoints missing from either report are not compared.
+   */
+  static List<String> regressions(JsonNode report, JsonNode baseline, double tolerance) {
+    List<String> regressions = new ArrayList<>();
+    double factor = tolerance / 100;
+
+    baseline.path("endpoints").fields().forEachRemaining(entry -> {
+      JsonNode current = report.path("endpoints").path(entry.getKey());
+
+      if (current.isMissingNode()) {
+        return;
+      }
+
+      for (String latency : List.of("p50Millis", "p99Millis")) {
+        double base = entry.getValue().path(latency).asDouble();
+        double value = current.path(latency).asDouble();
+
+        if (value > base * (1 + factor)) {
+          regressions.add(entry.getKey() + " " + latency + " " + value + " > baseline " + base);
+        }
+      }
+
+      double baseThroughput = entry.getValue().path("throughput").asDouble();
+      double throughput = current.path("throughput").asDouble();
+
+      if (throughput < baseThroughput * (1 - factor)) {
+        regressions.add(entry.getKey() + " throughput " + throughput + " < baseline "
+            + baseThroughput);
+      }
+    });
+
+    return regressions;
+  }
+
+}
@@ -0,0 +1,262 @@
+package pet.store.loadtest;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pet.store.PetStoreApplication;
+
+/*
+ * Load test of the pet store REST API. Run it with:
+ * mvn -Ploadtest test-compile exec:exec@loadtest -Dloadtest.args="--rate=500 --duration=2m"
+ * and, to fail the build on a regression against a saved report:
+ * -Dloadtest.args="--rate=500 --baseline=loadtest-baseline.json --tolerance=10"
+ * 
+ * The application is started in the same JVM with the local profile (in-memory H2, see
+ * application-local.yaml) on a random port, with the per-client rate limit turned off because all
+ * requests come from one client. The pet stores, employees and customers are seeded through the
+ * API, then requests are sent for the warmup and the measured duration.
+ * 
+ * The load is an open model: requests arrive at the given rate (exponentially distributed gaps,
+ * so a Poisson process) no matter how fast the server answers, and each arrival picks an endpoint
+ * by the weights of the mix. The JSON report is written to --report. When --baseline is given and
+ * a result is worse than the baseline by more than --tolerance percent, the regressions are
+ * printed and the process exits with status 1, which fails the Maven build.
+ */
+public final class LoadTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private LoadTest() {}
+
+  public static void main(String[] args) throws Exception {
+    LoadTestOptions options = LoadTestOptions.parse(args);
+    int status;
+
+    try (ConfigurableApplicationContext context =
+        new SpringApplicationBuilder(PetStoreApplication.class).profiles("local")
+            .properties("server.port=0", "logging.level.root=WARN",
+                "pet-store.admission.client-rate=0")
+            .run()) {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      URI baseUri = URI.create("http://localhost:" + port);
+      HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+      LoadTestData data = seed(client, baseUri, options);
+      System.out.printf("Seeded %d pet stores; warming up for %s%n", options.stores(),
+          options.warmup());
+
+      run(client, new Endpoint.Context(baseUri, data, new Random(options.seed() + 1)), options,
+          options.warmup(), new LatencyReport());
+
+      System.out.printf("Measuring for %s at %.0f requests per second%n", options.duration(),
+          options.rate());
+      LatencyReport report = new LatencyReport();
+      run(client, new Endpoint.Context(baseUri, data, new Random(options.seed())), options,
+          options.duration(), report);
+
+      Map<String, Object> json =
+          report.toJson(options.duration().toMillis() / 1000.0, options.rate());
+      LatencyReport.write(json, options.report(), OBJECT_MAPPER);
+      System.out.println(OBJECT_MAPPER.writerWithDefaultPrettyPrinter().writeValueAsString(json));
+
+      status = checkBaseline(json, options);
+    }
+
+    System.exit(status);
+  }
+
+  /*
+   * run method sends requests for the given duration. Arrivals are scheduled on this thread and
+   * the requests are sent asynchronously, so a slow response never delays the next arrival. At
+   * most max-in-flight requests are outstanding; an arrival beyond that is dropped and counted.
+   * Waits for the outstanding requests before returning.
+   */
+  private static void run(HttpClient client, Endpoint.Context context, LoadTestOptions options,
+      Duration duration, LatencyReport report) throws InterruptedException {
+    Endpoint[] endpoints = weightedEndpoints(options);
+    Semaphore inFlight = new Semaphore(options.maxInFlight());
+    double meanGapNanos = 1_000_000_000 / options.rate();
+    long start = System.nanoTime();
+    long end = start + duration.toNanos();
+    long arrival = start;
+
+    while (true) {
+      arrival += (long) (-Math.log(1 - context.random().nextDouble()) * meanGapNanos);
+
+      if (arrival >= end) {
+        break;
+      }
+
+      LockSupport.parkNanos(arrival - System.nanoTime());
+
+      Endpoint endpoint = endpoints[context.random().nextInt(endpoints.length)];
+      Endpoint.Call call = endpoint.call(context);
+
+      if (call == null) {
+        continue;
+      }
+
+      if (!inFlight.tryAcquire()) {
+        report.drop();
+        continue;
+      }
+
+      long scheduled = arrival;
+      client.sendAsync(call.request(), BodyHandlers.ofString()).whenComplete((response, e) -> {
+        inFlight.release();
+        boolean error = e != null || response.statusCode() >= 400;
+        report.record(endpoint, System.nanoTime() - scheduled, error);
+
+        if (!error && call.onSuccess() != null) {
+          call.onSuccess().accept(readJson(response.body()));
+        }
+      });
+    }
+
+    inFlight.acquire(options.maxInFlight());
+    inFlight.release(options.maxInFlight());
+  }
+
+  // Each endpoint appears in the array as many times as its weight.
+  private static Endpoint[] weightedEndpoints(LoadTestOptions options) {
+    List<Endpoint> endpoints = new ArrayList<>();
+
+    options.mix().forEach((endpoint, weight) -> {
+      for (int i = 0; i < weight; i++) {
+        endpoints.add(endpoint);
+      }
+    });
+
+    if (endpoints.isEmpty()) {
+      throw new IllegalArgumentException("The mix gives every endpoint a weight of 0");
+    }
+    return endpoints.toArray(Endpoint[]::new);
+  }
+
+  /*
+   * seed method creates the pet stores through the API, adds the employees of each pet store with
+   * one bulk request and the customers one at a time, and keeps the IDs that come back.
+   */
+  private static LoadTestData seed(HttpClient client, URI baseUri, LoadTestOptions options)
+      throws IOException, InterruptedException {
+    Random random = new Random(options.seed());
+    List<Long> petStoreIds = new ArrayList<>();
+    Map<Long, List<Long>> employeeIds = new HashMap<>();
+    Map<Long, List<Long>> customerIds = new HashMap<>();
+
+    for (int s = 0; s < options.stores(); s++) {
+      long petStoreId =
+          post(client, baseUri.resolve("/pet_store"), petStoreJson(random)).get("petStoreId")
+              .asLong();
+      petStoreIds.add(petStoreId);
+
+      List<Long> employees = new ArrayList<>();
+
+      if (options.employees() > 0) {
+        JsonNode results = post(client, baseUri.resolve("/pet_store/" + petStoreId + "/employees"),
+            employeesJson(options.employees(), 0));
+        results.forEach(result -> employees.add(result.get("employeeId").asLong()));
+      }
+      employeeIds.put(petStoreId, employees);
+
+      List<Long> customers = new ArrayList<>();
+
+      for (int c = 0; c < options.customers(); c++) {
+        customers.add(post(client, baseUri.resolve("/pet_store/" + petStoreId + "/customer"),
+            customerJson(c)).get("customerId").asLong());
+      }
+      customerIds.put(petStoreId, customers);
+    }
+
+    return new LoadTestData(petStoreIds, employeeIds, customerIds);
+  }
+
+  private static JsonNode post(HttpClient client, URI uri, String json)
+      throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(uri).header("Content-Type", "application/json")
+        .POST(BodyPublishers.ofString(json)).build();
+    HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
+
+    if (response.statusCode() >= 400) {
+      throw new IllegalStateException("Seeding failed: POST " + uri + " returned "
+          + response.statusCode() + " " + response.body());
+    }
+    return readJson(response.body());
+  }
+
+  private static JsonNode readJson(String body) {
+    try {
+      return OBJECT_MAPPER.readTree(body);
+    } catch (IOException e) {
+      throw new IllegalStateException("Response is not JSON: " + body, e);
+    }
+  }
+
+  private static int checkBaseline(Map<String, Object> json, LoadTestOptions options)
+      throws IOException {
+    if (options.baseline() == null) {
+      return 0;
+    }
+
+    List<String> regressions = LatencyReport.regressions(OBJECT_MAPPER.valueToTree(json),
+        OBJECT_MAPPER.readTree(options.baseline().toFile()), options.tolerance());
+
+    if (regressions.isEmpty()) {
+      System.out.printf("No regression against %s (tolerance %.0f%%)%n", options.baseline(),
+          options.tolerance());
+      return 0;
+    }
+
+    System.out.printf("Regressions against %s (tolerance %.0f%%):%n", options.baseline(),
+        options.tolerance());
+    regressions.forEach(regression -> System.out.println("  " + regression));
+    return 1;
+  }
+
+  // JSON bodies of the requests. The last names end in a digit so the searches find something.
+
+  static String petStoreJson(Random random) {
+    int n = random.nextInt(100_000);
+    return "{\"petStoreName\":\"Load Test Pets " + n + "\",\"petStoreAddress\":\"" + n
+        + " Main Street\",\"petStoreCity\":\"Denver\",\"petStoreState\":\"CO\","
+        + "\"petStoreZip\":\"80202\",\"petStorePhone\":\"303-555-0100\"}";
+  }
+
+  static String employeeJson(int n) {
+    return "{\"employeeFirstName\":\"First" + n + "\",\"employeeLastName\":\"Last" + n
+        + "\",\"employeePhone\":\"303-555-" + n + "\",\"employeeJobTitle\":\""
+        + (n % 10 == 0 ? "Manager" : "Associate") + "\"}";
+  }
+
+  static String employeesJson(int count, int first) {
+    StringBuilder json = new StringBuilder("[");
+
+    for (int i = 0; i < count; i++) {
+      json.append(i == 0 ? "" : ",").append(employeeJson(first + i));
+    }
+    return json.append(']').toString();
+  }
+
+  static String customerJson(int n) {
+    return "{\"customerFirstName\":\"First" + n + "\",\"customerLastName\":\"Last" + n
+        + "\",\"customerEmail\":\"customer" + n + "@example.com\"}";
+  }
+
+}
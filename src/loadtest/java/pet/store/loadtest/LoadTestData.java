@@ -0,0 +1,55 @@
+package pet.store.loadtest;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/*
+ * The IDs the load test works with. The seeded pet stores, employees and customers never go away,
+ * so reads and updates always find them. Pet stores created and customers added during the run
+ * are queued so the delete endpoints have something of their own to remove, and the jobs of
+ * background deletes are queued for the delete job endpoint.
+ */
+final class LoadTestData {
+
+  record StoreCustomer(long petStoreId, long customerId) {
+  }
+
+  private final List<Long> petStoreIds;
+  private final Map<Long, List<Long>> employeeIds;
+  private final Map<Long, List<Long>> customerIds;
+
+  final Queue<Long> createdPetStoreIds = new ConcurrentLinkedQueue<>();
+  final Queue<StoreCustomer> addedCustomers = new ConcurrentLinkedQueue<>();
+  final Queue<String> deleteJobIds = new ConcurrentLinkedQueue<>();
+
+  LoadTestData(List<Long> petStoreIds, Map<Long, List<Long>> employeeIds,
+      Map<Long, List<Long>> customerIds) {
+    this.petStoreIds = List.copyOf(petStoreIds);
+    this.employeeIds = Map.copyOf(employeeIds);
+    this.customerIds = Map.copyOf(customerIds);
+  }
+
+  long petStoreId(Random random) {
+    return petStoreIds.get(random.nextInt(petStoreIds.size()));
+  }
+
+  // Returns -1 when the pet store has no seeded employees.
+  long employeeId(long petStoreId, Random random) {
+    List<Long> ids = employeeIds.get(petStoreId);
+    return ids.isEmpty() ? -1 : ids.get(random.nextInt(ids.size()));
+  }
+
+  // Returns -1 when the pet store has no seeded customers.
+  long customerId(long petStoreId, Random random) {
+    List<Long> ids = customerIds.get(petStoreId);
+    return ids.isEmpty() ? -1 : ids.get(random.nextInt(ids.size()));
+  }
+
+  long maxPetStoreId() {
+    return petStoreIds.stream().mapToLong(Long::longValue).max().orElse(0);
+  }
+
+}
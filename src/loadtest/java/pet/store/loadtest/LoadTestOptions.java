@@ -0,0 +1,80 @@
+package pet.store.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Options of a load test run, read from --name=value arguments. Every option has a default, so a
+ * run needs no arguments at all.
+ * 
+ * --stores=20 --employees=50 --customers=50  data seeded before the run (per store)
+ * --rate=200         total arrival rate in requests per second (open model)
+ * --warmup=10s --duration=60s
+ * --max-in-flight=2000  requests allowed to be outstanding before arrivals are dropped
+ * --mix=get:40,list:10,...  weight per endpoint; endpoints not listed keep their default weight
+ * --report=target/loadtest-report.json
+ * --baseline=path --tolerance=10  fail when a p50/p99 is more than tolerance % above the baseline
+ *                                 or the throughput more than tolerance % below it
+ * --seed=42          random seed, so two runs send the same sequence of requests
+ */
+record LoadTestOptions(int stores, int employees, int customers, double rate, Duration warmup,
+    Duration duration, int maxInFlight, Map<Endpoint, Integer> mix, Path report, Path baseline,
+    double tolerance, long seed) {
+
+  static LoadTestOptions parse(String[] args) {
+    Map<String, String> values = new HashMap<>();
+
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      int equals = arg.indexOf('=');
+      values.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+
+    Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+
+    for (Endpoint endpoint : Endpoint.values()) {
+      mix.put(endpoint, endpoint.defaultWeight());
+    }
+
+    if (values.containsKey("mix")) {
+      for (String entry : values.get("mix").split(",")) {
+        String[] parts = entry.split(":");
+        mix.put(Endpoint.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+      }
+    }
+
+    String baseline = values.get("baseline");
+
+    return new LoadTestOptions(Integer.parseInt(values.getOrDefault("stores", "20")),
+        Integer.parseInt(values.getOrDefault("employees", "50")),
+        Integer.parseInt(values.getOrDefault("customers", "50")),
+        Double.parseDouble(values.getOrDefault("rate", "200")),
+        duration(values.getOrDefault("warmup", "10s")),
+        duration(values.getOrDefault("duration", "60s")),
+        Integer.parseInt(values.getOrDefault("max-in-flight", "2000")), mix,
+        Path.of(values.getOrDefault("report", "target/loadtest-report.json")),
+        baseline == null || baseline.isBlank() ? null : Path.of(baseline),
+        Double.parseDouble(values.getOrDefault("tolerance", "10")),
+        Long.parseLong(values.getOrDefault("seed", "42")));
+  }
+
+  // Accepts 500ms, 30s and 5m.
+  private static Duration duration(String value) {
+    if (value.endsWith("ms")) {
+      return Duration.ofMillis(Long.parseLong(value.substring(0, value.length() - 2)));
+    }
+    if (value.endsWith("s")) {
+      return Duration.ofSeconds(Long.parseLong(value.substring(0, value.length() - 1)));
+    }
+    if (value.endsWith("m")) {
+      return Duration.ofMinutes(Long.parseLong(value.substring(0, value.length() - 1)));
+    }
+    throw new IllegalArgumentException("Unknown duration " + value);
+  }
+
+}
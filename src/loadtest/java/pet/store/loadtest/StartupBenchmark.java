@@ -0,0 +1,168 @@
+package pet.store.loadtest;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Startup benchmark. Measures the time to first request of the application in the default mode
+ * and in the fast-start mode. Run it with:
+ * mvn -Pcds package && mvn -Ploadtest test-compile exec:exec@startup
+ * with options passed as e.g. -Dstartup.args="--runs=10 --profiles=local"
+ * 
+ * Each run starts the application as a new JVM on a free port and sends GET /pet_store until it
+ * gets a 200 response. The time from starting the process to that response is the time to first
+ * request, so it includes the JVM start, the Spring context, the schema check and the beans that
+ * are only created by the first request. The modes take turns so both see the same machine state.
+ * 
+ * default     java -jar target/pet-store-0.0.1-SNAPSHOT.jar
+ * fast-start  java -XX:SharedArchiveFile=target/cds/pet-store.jsa
+ *             -jar target/cds/pet-store-0.0.1-SNAPSHOT.jar with the fast-start profile added
+ *             (without the archive when mvn -Pcds package has not been run)
+ * 
+ * Options: --runs=5, --profiles=<extra profiles for both modes, e.g. local>,
+ * --jar=target/pet-store-0.0.1-SNAPSHOT.jar, --cds=target/cds, --timeout=120 (seconds per start)
+ */
+public final class StartupBenchmark {
+
+  private static final HttpClient CLIENT =
+      HttpClient.newBuilder().connectTimeout(Duration.ofMillis(200)).build();
+
+  private StartupBenchmark() {}
+
+  public static void main(String[] args) throws Exception {
+    Map<String, String> options = options(args);
+    int runs = Integer.parseInt(options.getOrDefault("runs", "5"));
+    String profiles = options.getOrDefault("profiles", "");
+    Path jar = Path.of(options.getOrDefault("jar", "target/pet-store-0.0.1-SNAPSHOT.jar"));
+    Path cds = Path.of(options.getOrDefault("cds", "target/cds"));
+    Duration timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "120")));
+
+    if (!Files.exists(jar)) {
+      throw new IllegalStateException("No jar at " + jar + ". Run mvn package first.");
+    }
+
+    Path archive = cds.resolve("pet-store.jsa");
+    Path extractedJar = cds.resolve(jar.getFileName());
+    List<String> fastCommand = new ArrayList<>();
+
+    if (Files.exists(archive) && Files.exists(extractedJar)) {
+      fastCommand.addAll(
+          List.of("-XX:SharedArchiveFile=" + archive, "-jar", extractedJar.toString()));
+    } else {
+      System.out.println("No class data sharing archive in " + cds
+          + ", fast-start runs without it. Run mvn -Pcds package to build it.");
+      fastCommand.addAll(List.of("-jar", jar.toString()));
+    }
+    fastCommand.add("--spring.profiles.active=" + join(profiles, "fast-start"));
+
+    List<String> defaultCommand = new ArrayList<>(List.of("-jar", jar.toString()));
+
+    if (!profiles.isBlank()) {
+      defaultCommand.add("--spring.profiles.active=" + profiles);
+    }
+
+    List<Long> defaultMillis = new ArrayList<>();
+    List<Long> fastMillis = new ArrayList<>();
+
+    for (int run = 1; run <= runs; run++) {
+      defaultMillis.add(timeToFirstRequest(defaultCommand, timeout));
+      fastMillis.add(timeToFirstRequest(fastCommand, timeout));
+      System.out.printf("run %d: default %d ms, fast-start %d ms%n", run,
+          defaultMillis.get(run - 1), fastMillis.get(run - 1));
+    }
+
+    System.out.printf("%-12s %8s %8s %8s%n", "mode", "min ms", "median", "max ms");
+    print("default", defaultMillis);
+    print("fast-start", fastMillis);
+  }
+
+  /*
+   * Starts the application with the given java arguments and returns the milliseconds until GET
+   * /pet_store answered 200. The process is stopped afterwards.
+   */
+  private static long timeToFirstRequest(List<String> javaArgs, Duration timeout)
+      throws IOException, InterruptedException {
+    int port = freePort();
+    List<String> command = new ArrayList<>();
+    command.add(Path.of(System.getProperty("java.home"), "bin", "java").toString());
+    command.addAll(javaArgs);
+    command.add("--server.port=" + port);
+    command.add("--logging.level.root=WARN");
+
+    HttpRequest request =
+        HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/pet_store"))
+            .timeout(Duration.ofSeconds(10)).GET().build();
+
+    long start = System.nanoTime();
+    Process process = new ProcessBuilder(command).redirectErrorStream(true)
+        .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+
+    try {
+      while (System.nanoTime() - start < timeout.toNanos()) {
+        if (!process.isAlive()) {
+          throw new IllegalStateException(
+              "The application exited with status " + process.exitValue() + ": " + command);
+        }
+        try {
+          if (CLIENT.send(request, BodyHandlers.discarding()).statusCode() == 200) {
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+          }
+        } catch (IOException e) {
+          /* Not listening yet. */
+        }
+        Thread.sleep(10);
+      }
+      throw new IllegalStateException("No response within " + timeout + ": " + command);
+    } finally {
+      process.destroy();
+
+      if (!process.waitFor(30, TimeUnit.SECONDS)) {
+        process.destroyForcibly().waitFor();
+      }
+    }
+  }
+
+  private static int freePort() throws IOException {
+    try (ServerSocket socket = new ServerSocket(0)) {
+      return socket.getLocalPort();
+    }
+  }
+
+  private static String join(String profiles, String profile) {
+    return profiles.isBlank() ? profile : profiles + "," + profile;
+  }
+
+  private static void print(String mode, List<Long> millis) {
+    List<Long> sorted = new ArrayList<>(millis);
+    Collections.sort(sorted);
+    System.out.printf("%-12s %8d %8d %8d%n", mode, sorted.get(0), sorted.get(sorted.size() / 2),
+        sorted.get(sorted.size() - 1));
+  }
+
+  private static Map<String, String> options(String[] args) {
+    Map<String, String> values = new HashMap<>();
+
+    for (String arg : args) {
+      if (!arg.startsWith("--") || !arg.contains("=")) {
+        throw new IllegalArgumentException("Expected --name=value but got " + arg);
+      }
+      int equals = arg.indexOf('=');
+      values.put(arg.substring(2, equals), arg.substring(equals + 1));
+    }
+    return values;
+  }
+
+}
@@ -2,14 +2,24 @@ package pet.store;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /*
  * This class contains the main method to start the SpringBoot Application.
  * 
  * The SpringBootApplication annotation starts the component scan in the pet park package.
+ * 
+ * Execution modes: by default every request runs on a Tomcat platform thread. Setting
+ * spring.threads.virtual.enabled to true in application.yaml (on a Java 21 or later runtime) runs
+ * every request, and so every @Transactional service call, on its own virtual thread instead. In
+ * both modes AdmissionControlFilter limits how many requests can use the connection pool at once.
+ * 
+ * @EnableScheduling runs the scheduled jobs, such as the reconciliation of the pet store
+ * statistics.
  */
 
 @SpringBootApplication
+@EnableScheduling
 public class PetStoreApplication {
 
   public static void main(String[] args) {
@@ -0,0 +1,122 @@
+package pet.store.bulkload;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Reads an NDJSON file through memory-mapped I/O. split() cuts the file into chunks of about
+ * chunkSize bytes that each end after a line feed, so every line belongs to exactly one chunk and
+ * the chunks can be parsed on different threads. The chunks only depend on the file and the chunk
+ * size, so a resumed load gets the same chunks again.
+ */
+final class BulkLoadFile {
+
+  // Longest line accepted, and so the most a chunk can run past its nominal end.
+  static final int MAX_LINE_LENGTH = 1 << 20;
+
+  // Largest chunk size, so a chunk and its last line always fit in one mapping.
+  static final long MAX_CHUNK_SIZE = 1L << 30;
+
+  record Chunk(int index, long start, long end) {
+
+    long length() {
+      return end - start;
+    }
+  }
+
+  @FunctionalInterface
+  interface LineHandler {
+    void line(byte[] line, int length) throws IOException;
+  }
+
+  private BulkLoadFile() {}
+
+  static List<Chunk> split(Path file, long chunkSize) throws IOException {
+    if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+      throw new IllegalArgumentException(
+          "The chunk size must be between 1 and " + MAX_CHUNK_SIZE + " bytes");
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      long size = channel.size();
+      List<Chunk> chunks = new ArrayList<>();
+      long start = 0;
+
+      while (start < size) {
+        long end = Math.min(size, start + chunkSize);
+
+        if (end < size) {
+          end = afterNextLineFeed(channel, end, size);
+        }
+        chunks.add(new Chunk(chunks.size(), start, end));
+        start = end;
+      }
+      return chunks;
+    }
+  }
+
+  /*
+   * Calls the handler with every non-blank line of the chunk, without the line feed (and carriage
+   * return). The line array is reused, so the handler must not keep it.
+   */
+  static void forEachLine(Path file, Chunk chunk, LineHandler handler) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, chunk.start(), chunk.length());
+      byte[] line = new byte[8192];
+      int length = 0;
+
+      while (buffer.hasRemaining()) {
+        byte b = buffer.get();
+
+        if (b == '\n') {
+          emit(handler, line, length);
+          length = 0;
+        } else {
+          if (length == line.length) {
+            if (length == MAX_LINE_LENGTH) {
+              throw new IOException("Line longer than " + MAX_LINE_LENGTH + " bytes in chunk "
+                  + chunk.index() + " at byte " + (chunk.start() + buffer.position()));
+            }
+            line = Arrays.copyOf(line, Math.min(MAX_LINE_LENGTH, length * 2));
+          }
+          line[length++] = b;
+        }
+      }
+      emit(handler, line, length);
+    }
+  }
+
+  private static void emit(LineHandler handler, byte[] line, int length) throws IOException {
+    if (length > 0 && line[length - 1] == '\r') {
+      length--;
+    }
+    if (length > 0) {
+      handler.line(line, length);
+    }
+  }
+
+  // Returns the position just after the first line feed at or after position.
+  private static long afterNextLineFeed(FileChannel channel, long position, long size)
+      throws IOException {
+    MappedByteBuffer window =
+        channel.map(MapMode.READ_ONLY, position, Math.min(MAX_LINE_LENGTH, size - position));
+
+    for (int i = 0; i < window.limit(); i++) {
+      if (window.get(i) == '\n') {
+        return position + i + 1;
+      }
+    }
+    if (position + window.limit() == size) {
+      return size;
+    }
+    throw new IOException("Line longer than " + MAX_LINE_LENGTH + " bytes at byte " + position);
+  }
+
+}
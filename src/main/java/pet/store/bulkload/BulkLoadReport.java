@@ -0,0 +1,99 @@
+package pet.store.bulkload;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+ * Throughput report of a bulk load. For every pass it counts the chunks loaded and skipped
+ * (already loaded by an earlier run), the bytes read and the rows written, and times the pass.
+ * format() prints one line per pass with the rows and megabytes per second, and a total.
+ */
+public class BulkLoadReport {
+
+  private static final double MEGABYTE = 1024 * 1024;
+
+  private static class PassStats {
+    private final LongAdder chunks = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final AtomicLong skipped = new AtomicLong();
+    private long startNanos;
+    private long nanos;
+  }
+
+  private final Path file;
+  private final long startNanos = System.nanoTime();
+  private final Map<String, PassStats> passes = new LinkedHashMap<>();
+  private long nanos;
+
+  public BulkLoadReport(Path file) {
+    this.file = file;
+  }
+
+  synchronized void startPass(String pass, int skippedChunks) {
+    PassStats stats = passes.computeIfAbsent(pass, name -> new PassStats());
+    stats.skipped.set(skippedChunks);
+    stats.startNanos = System.nanoTime();
+  }
+
+  // Called from the loader threads when a chunk is done.
+  void chunkDone(String pass, long bytes, long rows) {
+    PassStats stats;
+
+    synchronized (this) {
+      stats = passes.get(pass);
+    }
+    stats.chunks.increment();
+    stats.bytes.add(bytes);
+    stats.rows.add(rows);
+  }
+
+  synchronized void finishPass(String pass) {
+    PassStats stats = passes.get(pass);
+    stats.nanos = System.nanoTime() - stats.startNanos;
+  }
+
+  synchronized void finish() {
+    nanos = System.nanoTime() - startNanos;
+  }
+
+  public synchronized long rows(String pass) {
+    PassStats stats = passes.get(pass);
+    return stats == null ? 0 : stats.rows.sum();
+  }
+
+  public synchronized String format() {
+    StringBuilder report = new StringBuilder("Bulk load of " + file + "\n");
+    report.append(String.format("%-18s %8s %8s %12s %10s %9s %12s %9s%n", "pass", "chunks",
+        "skipped", "rows", "MB read", "seconds", "rows/s", "MB/s"));
+    long totalRows = 0;
+    long totalBytes = 0;
+
+    for (Map.Entry<String, PassStats> entry : passes.entrySet()) {
+      PassStats stats = entry.getValue();
+      double seconds = stats.nanos / 1e9;
+      long rows = stats.rows.sum();
+      long bytes = stats.bytes.sum();
+      totalRows += rows;
+      totalBytes += bytes;
+
+      report.append(String.format("%-18s %8d %8d %12d %10.1f %9.1f %12.0f %9.1f%n",
+          entry.getKey(), stats.chunks.sum(), stats.skipped.get(), rows, bytes / MEGABYTE,
+          seconds, perSecond(rows, seconds), perSecond(bytes / MEGABYTE, seconds)));
+    }
+
+    double seconds = nanos / 1e9;
+    report.append(String.format("%-18s %8s %8s %12d %10.1f %9.1f %12.0f %9.1f", "total", "", "",
+        totalRows, totalBytes / MEGABYTE, seconds, perSecond(totalRows, seconds),
+        perSecond(totalBytes / MEGABYTE, seconds)));
+    return report.toString();
+  }
+
+  private static double perSecond(double amount, double seconds) {
+    return seconds > 0 ? amount / seconds : 0;
+  }
+
+}
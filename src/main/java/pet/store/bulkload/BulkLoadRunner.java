@@ -0,0 +1,53 @@
+package pet.store.bulkload;
+
+import java.nio.file.Path;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.stereotype.Component;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Bulk-load command. Starting the application with a file to load, e.g.
+ * 
+ * java -jar pet-store.jar --spring.main.web-application-type=none
+ * --pet-store.bulk-load.file=/data/acquisition.ndjson
+ * 
+ * runs BulkLoader on the file once the application has started, logs the throughput report and
+ * then stops the application (unless pet-store.bulk-load.exit-when-done is false). The exit status
+ * is 0 when the load finished. When it fails the application does not start, and running the same
+ * command again resumes the load from the last checkpoint.
+ */
+@Component
+@ConditionalOnProperty("pet-store.bulk-load.file")
+@Slf4j
+public class BulkLoadRunner implements ApplicationRunner {
+
+  @Autowired
+  private BulkLoader bulkLoader;
+
+  @Autowired
+  private ConfigurableApplicationContext applicationContext;
+
+  @Value("${pet-store.bulk-load.file}")
+  private String file;
+
+  @Value("${pet-store.bulk-load.exit-when-done:true}")
+  private boolean exitWhenDone;
+
+  @Override
+  public void run(ApplicationArguments args) throws Exception {
+    log.info("Bulk loading {}", file);
+    BulkLoadReport report = bulkLoader.load(Path.of(file));
+    log.info("{}", report.format());
+
+    if (exitWhenDone) {
+      System.exit(SpringApplication.exit(applicationContext));
+    }
+  }
+
+}
@@ -0,0 +1,77 @@
+package pet.store.bulkload;
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/*
+ * Writes the rows of the bulk loader with multi-row INSERT statements (INSERT ... VALUES (...),
+ * (...), ...), batch-size rows per statement, into the same tables the entities map. The rows
+ * come with their IDs, so nothing has to be read back. The statements run in the caller's
+ * transaction.
+ * 
+ * Any failing row (a duplicate key, a missing pet store or customer, a value too long for its
+ * column) fails the statement and so the chunk. The only exception is ON_DUPLICATE_MEMBERSHIP,
+ * which keeps a pet_store_customer link that already exists instead of failing on it.
+ */
+@Component
+public class BulkLoadWriter {
+
+  static final String INSERT_PET_STORES = "INSERT INTO pet_store (pet_store_id, pet_store_name,"
+      + " pet_store_address, pet_store_city, pet_store_state, pet_store_zip, pet_store_phone,"
+      + " version)";
+  static final String INSERT_EMPLOYEES = "INSERT INTO employee (employee_id, employee_first_name,"
+      + " employee_last_name, employee_phone, employee_job_title, pet_store_id)";
+  static final String INSERT_CUSTOMERS = "INSERT INTO customer (customer_id,"
+      + " customer_first_name, customer_last_name, customer_email)";
+
+  static final String INSERT_MEMBERSHIPS =
+      "INSERT INTO pet_store_customer (pet_store_id, customer_id)";
+
+  /*
+   * A customer linked to the same pet store again is linked once. Unlike INSERT IGNORE this does
+   * not turn foreign key or data errors into warnings.
+   */
+  static final String ON_DUPLICATE_MEMBERSHIP =
+      " ON DUPLICATE KEY UPDATE customer_id = customer_id";
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Value("${pet-store.bulk-load.batch-size:500}")
+  private int batchSize;
+
+  /*
+   * Inserts the rows with the given "INSERT INTO table (columns)" statement. Every row must have
+   * one value per column. Returns the number of rows inserted.
+   */
+  public int insert(String insertInto, List<Object[]> rows) {
+    return insert(insertInto, "", rows);
+  }
+
+  /*
+   * Same as insert(insertInto, rows), with the given clause (for example ON DUPLICATE KEY UPDATE)
+   * after the VALUES list of every statement.
+   */
+  public int insert(String insertInto, String suffix, List<Object[]> rows) {
+    int inserted = 0;
+
+    for (int from = 0; from < rows.size(); from += batchSize) {
+      List<Object[]> batch = rows.subList(from, Math.min(rows.size(), from + batchSize));
+      int columns = batch.get(0).length;
+      StringBuilder sql = new StringBuilder(insertInto).append(" VALUES ");
+      Object[] args = new Object[batch.size() * columns];
+
+      for (int row = 0; row < batch.size(); row++) {
+        sql.append(row == 0 ? "(" : ", (").append("?, ".repeat(columns - 1)).append("?)");
+        System.arraycopy(batch.get(row), 0, args, row * columns, columns);
+      }
+      sql.append(suffix);
+      inserted += jdbcTemplate.update(sql.toString(), args);
+    }
+    return inserted;
+  }
+
+}
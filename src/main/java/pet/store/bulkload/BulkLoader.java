@@ -0,0 +1,495 @@
+package pet.store.bulkload;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import org.springframework.util.unit.DataSize;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import jakarta.persistence.PersistenceUnit;
+import lombok.extern.slf4j.Slf4j;
+import pet.store.config.CacheConfig;
+import pet.store.dao.BulkLoadChunkDao;
+import pet.store.dao.BulkLoadJobDao;
+import pet.store.dao.CustomerDao;
+import pet.store.dao.EmployeeDao;
+import pet.store.dao.PetStoreDao;
+import pet.store.entity.BulkLoadChunk;
+import pet.store.entity.BulkLoadJob;
+import pet.store.service.PetStoreStatsService;
+
+/*
+ * Loads pet stores, employees and customers from an NDJSON file in the format written by GET
+ * /pet_store/export: one "pet_store", "employee" or "customer" object per line, carrying the IDs
+ * of the source system. It is meant for large offline migrations, with no API traffic while it
+ * runs, and writes straight to the tables instead of going through PetStoreService.
+ * 
+ * The file is memory-mapped and split into chunks (BulkLoadFile), which are parsed and written in
+ * parallel on pet-store.bulk-load.threads threads. The load runs in passes so that every row a
+ * foreign key points to is committed before it is used:
+ * 
+ * 1. PET_STORES: pet stores, with ID = pet store ID offset + source pet store ID.
+ * 2. EMPLOYEES: employees, with IDs from a block reserved in employee_seq for each chunk.
+ * 3. customer dedupe (no writes): finds, for every email, the lowest source customer ID using it.
+ * 4. CUSTOMERS: one customer per email, ID = customer ID offset + that source customer ID. Emails
+ *    are compared trimmed and in lower case, and customers already in the database (ID up to the
+ *    offset) with the same email are reused. Customers without an email are never merged.
+ * 5. MEMBERSHIPS: the pet_store_customer rows of every customer line.
+ * 
+ * Each chunk of each pass is written in one transaction together with its BulkLoadChunk
+ * checkpoint. A job is identified by the file name, size and modification time, so running the
+ * loader on the same file again skips the chunks already loaded. The offsets are taken when the
+ * job starts and kept in BulkLoadJob, so a resumed job gives the same IDs.
+ * 
+ * The chunks do not touch the employee and customer counters of PetStoreStatsService; they are
+ * brought up to date once by the reconciliation at the end of the load, which recounts every pet
+ * store the load added rows to. Updating them with each chunk would take the stats row locks of
+ * the pet stores from every writer thread. The caches are cleared at the end too, since the rows
+ * were written without Hibernate. Employee IDs are reserved in the employee_seq table, so the
+ * loader needs MySQL.
+ * 
+ * Every pass maps the lines of a chunk straight into the column values it needs, so a chunk never
+ * holds more than one parsed JSON tree at a time.
+ */
+@Service
+@Slf4j
+public class BulkLoader {
+
+  /*
+   * Gap left on both sides of a block of employee IDs reserved in employee_seq: two allocation
+   * blocks (allocationSize 50) of the Employee ID generator, so a block Hibernate has taken or
+   * takes next never overlaps the reserved IDs.
+   */
+  private static final long EMPLOYEE_ID_MARGIN = 100;
+
+  // Most emails looked up by one query.
+  private static final int EMAIL_LOOKUP_SIZE = 1000;
+
+  private static final String DEDUPE_PASS = "CUSTOMER_DEDUPE";
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private BulkLoadWriter bulkLoadWriter;
+
+  @Autowired
+  private BulkLoadJobDao bulkLoadJobDao;
+
+  @Autowired
+  private BulkLoadChunkDao bulkLoadChunkDao;
+
+  @Autowired
+  private PetStoreDao petStoreDao;
+
+  @Autowired
+  private EmployeeDao employeeDao;
+
+  @Autowired
+  private CustomerDao customerDao;
+
+  @Autowired
+  private PetStoreStatsService petStoreStatsService;
+
+  @Autowired
+  private CacheManager cacheManager;
+
+  @PersistenceUnit
+  private EntityManagerFactory entityManagerFactory;
+
+  @Value("${pet-store.bulk-load.chunk-size:64MB}")
+  private DataSize chunkSize;
+
+  @Value("${pet-store.bulk-load.threads:4}")
+  private int threads;
+
+  // One chunk of work: loads the chunk and returns the number of rows written.
+  @FunctionalInterface
+  private interface ChunkLoader {
+    long load(BulkLoadFile.Chunk chunk) throws IOException;
+  }
+
+  // The fields of a customer line the MEMBERSHIPS pass needs.
+  private record Membership(String email, long customerId, long[] petStoreIds) {}
+
+  /*
+   * load method takes the path of the NDJSON file, loads it (or the part of it not loaded by an
+   * earlier run) and returns the throughput report. If a chunk fails the load stops and the
+   * exception is thrown; the chunks committed so far are kept and skipped by the next run.
+   */
+  public BulkLoadReport load(Path file) throws IOException, InterruptedException {
+    long fileSize = Files.size(file);
+    String jobId = file.getFileName() + ":" + fileSize + ":"
+        + Files.getLastModifiedTime(file).toMillis();
+    BulkLoadJob job = bulkLoadJobDao.findById(jobId).orElse(null);
+    List<BulkLoadFile.Chunk> chunks =
+        BulkLoadFile.split(file, Objects.isNull(job) ? chunkSize.toBytes() : job.getChunkSize());
+
+    if (Objects.isNull(job)) {
+      job = new BulkLoadJob();
+      job.setJobId(jobId);
+      job.setFileName(file.getFileName().toString());
+      job.setFileSize(fileSize);
+      job.setChunkSize(chunkSize.toBytes());
+      job.setChunkCount(chunks.size());
+      job.setPetStoreIdOffset(petStoreDao.findMaxPetStoreId());
+      job.setCustomerIdOffset(customerDao.findMaxCustomerId());
+      job.setStartedAt(Instant.now());
+      job = bulkLoadJobDao.save(job);
+      log.info("Starting bulk load job {} with {} chunks", jobId, chunks.size());
+    } else {
+      log.info("Resuming bulk load job {} started at {}", jobId, job.getStartedAt());
+    }
+
+    BulkLoadJob loadJob = job;
+    BulkLoadReport report = new BulkLoadReport(file);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+
+    try {
+      runPass(executor, loadJob, BulkLoadChunk.Pass.PET_STORES.name(), chunks, report,
+          chunk -> loadPetStores(file, loadJob, chunk));
+      runPass(executor, loadJob, BulkLoadChunk.Pass.EMPLOYEES.name(), chunks, report,
+          chunk -> loadEmployees(file, loadJob, chunk));
+
+      Map<String, Long> emailOwners = new ConcurrentHashMap<>();
+
+      if (hasPendingChunks(loadJob, BulkLoadChunk.Pass.CUSTOMERS)
+          || hasPendingChunks(loadJob, BulkLoadChunk.Pass.MEMBERSHIPS)) {
+        runPass(executor, loadJob, DEDUPE_PASS, chunks, report,
+            chunk -> findEmailOwners(file, chunk, emailOwners));
+      }
+
+      runPass(executor, loadJob, BulkLoadChunk.Pass.CUSTOMERS.name(), chunks, report,
+          chunk -> loadCustomers(file, loadJob, chunk, emailOwners));
+      runPass(executor, loadJob, BulkLoadChunk.Pass.MEMBERSHIPS.name(), chunks, report,
+          chunk -> loadMemberships(file, loadJob, chunk, emailOwners));
+    } finally {
+      executor.shutdownNow();
+    }
+
+    petStoreStatsService.reconcile();
+    entityManagerFactory.getCache().unwrap(org.hibernate.Cache.class).evictAllRegions();
+    cacheManager.getCache(CacheConfig.PET_STORE_CACHE).clear();
+
+    loadJob.setFinishedAt(Instant.now());
+    bulkLoadJobDao.save(loadJob);
+    report.finish();
+    return report;
+  }
+
+  /*
+   * runPass method loads every chunk not yet checkpointed for the pass on the executor and waits
+   * for all of them. The first failure cancels the chunks not started yet and is rethrown.
+   */
+  private void runPass(ExecutorService executor, BulkLoadJob job, String pass,
+      List<BulkLoadFile.Chunk> chunks, BulkLoadReport report, ChunkLoader loader)
+      throws IOException, InterruptedException {
+    Set<Integer> done = DEDUPE_PASS.equals(pass) ? Set.of()
+        : bulkLoadChunkDao.findChunkIndexes(job.getJobId(), BulkLoadChunk.Pass.valueOf(pass));
+    List<Future<?>> futures = new ArrayList<>();
+
+    report.startPass(pass, done.size());
+
+    for (BulkLoadFile.Chunk chunk : chunks) {
+      if (done.contains(chunk.index())) {
+        continue;
+      }
+      futures.add(executor.submit(() -> {
+        long rows = loader.load(chunk);
+        report.chunkDone(pass, chunk.length(), rows);
+        log.debug("Bulk load {} chunk {} of {}: {} rows", pass, chunk.index() + 1,
+            chunks.size(), rows);
+        return null;
+      }));
+    }
+
+    try {
+      for (Future<?> future : futures) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      futures.forEach(future -> future.cancel(false));
+      Throwable cause = e.getCause();
+
+      if (cause instanceof IOException ioException) {
+        throw ioException;
+      }
+      if (cause instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new IllegalStateException("Bulk load pass " + pass + " failed", cause);
+    }
+
+    report.finishPass(pass);
+    log.info("Bulk load pass {} done: {} rows", pass, report.rows(pass));
+  }
+
+  private boolean hasPendingChunks(BulkLoadJob job, BulkLoadChunk.Pass pass) {
+    return bulkLoadChunkDao.findChunkIndexes(job.getJobId(), pass).size() < job.getChunkCount();
+  }
+
+  private long loadPetStores(Path file, BulkLoadJob job, BulkLoadFile.Chunk chunk)
+      throws IOException {
+    List<Object[]> rows = readLines(file, chunk, "pet_store",
+        line -> new Object[] {job.getPetStoreIdOffset() + requiredId(line, "petStoreId"),
+            text(line, "petStoreName"), text(line, "petStoreAddress"), text(line, "petStoreCity"),
+            text(line, "petStoreState"), text(line, "petStoreZip"), text(line, "petStorePhone"),
+            0L});
+
+    return commitChunk(job, BulkLoadChunk.Pass.PET_STORES, chunk,
+        () -> bulkLoadWriter.insert(BulkLoadWriter.INSERT_PET_STORES, rows));
+  }
+
+  /*
+   * loadEmployees method reserves one block of employee IDs for the employees of the chunk, then
+   * inserts them.
+   */
+  private long loadEmployees(Path file, BulkLoadJob job, BulkLoadFile.Chunk chunk)
+      throws IOException {
+    List<Object[]> rows = readLines(file, chunk, "employee",
+        line -> new Object[] {null, text(line, "employeeFirstName"),
+            text(line, "employeeLastName"), text(line, "employeePhone"),
+            text(line, "employeeJobTitle"),
+            job.getPetStoreIdOffset() + requiredId(line, "petStoreId")});
+
+    if (!rows.isEmpty()) {
+      long firstId = reserveEmployeeIds(rows.size());
+
+      for (int i = 0; i < rows.size(); i++) {
+        rows.get(i)[0] = firstId + i;
+      }
+    }
+
+    return commitChunk(job, BulkLoadChunk.Pass.EMPLOYEES, chunk,
+        () -> bulkLoadWriter.insert(BulkLoadWriter.INSERT_EMPLOYEES, rows));
+  }
+
+  private long reserveEmployeeIds(int count) {
+    return transactionTemplate.execute(status -> {
+      long firstId = employeeDao.lockEmployeeSequence() + EMPLOYEE_ID_MARGIN;
+      employeeDao.updateEmployeeSequence(firstId + count + EMPLOYEE_ID_MARGIN);
+      return firstId;
+    });
+  }
+
+  // Records the lowest source customer ID of every email in the chunk.
+  private long findEmailOwners(Path file, BulkLoadFile.Chunk chunk, Map<String, Long> emailOwners)
+      throws IOException {
+    List<Object[]> customers = readLines(file, chunk, "customer",
+        line -> new Object[] {emailKey(line), requiredId(line, "customerId")});
+
+    for (Object[] customer : customers) {
+      if (Objects.nonNull(customer[0])) {
+        emailOwners.merge((String) customer[0], (Long) customer[1], Math::min);
+      }
+    }
+    return customers.size();
+  }
+
+  /*
+   * loadCustomers method inserts the customer lines of the chunk that own their email (or have
+   * none). Emails that already belonged to a customer before the job started are skipped.
+   */
+  private long loadCustomers(Path file, BulkLoadJob job, BulkLoadFile.Chunk chunk,
+      Map<String, Long> emailOwners) throws IOException {
+    List<Object[]> owners = new ArrayList<>();
+    List<String> ownerEmails = new ArrayList<>();
+
+    for (Object[] row : readLines(file, chunk, "customer",
+        line -> new Object[] {requiredId(line, "customerId"), text(line, "customerFirstName"),
+            text(line, "customerLastName"), text(line, "customerEmail")})) {
+      String email = normalizeEmail((String) row[3]);
+      long customerId = (Long) row[0];
+
+      if (Objects.isNull(email) || emailOwners.get(email) == customerId) {
+        row[0] = job.getCustomerIdOffset() + customerId;
+        owners.add(row);
+        ownerEmails.add(email);
+      }
+    }
+
+    return commitChunk(job, BulkLoadChunk.Pass.CUSTOMERS, chunk, () -> {
+      Map<String, Long> existing = existingCustomerIds(ownerEmails, job);
+      List<Object[]> rows = new ArrayList<>();
+
+      for (int i = 0; i < owners.size(); i++) {
+        String email = ownerEmails.get(i);
+
+        if (Objects.isNull(email) || !existing.containsKey(email)) {
+          rows.add(owners.get(i));
+        }
+      }
+      return bulkLoadWriter.insert(BulkLoadWriter.INSERT_CUSTOMERS, rows);
+    });
+  }
+
+  /*
+   * loadMemberships method links the customer of every customer line in the chunk to the pet
+   * stores of the line. Customers merged by email can link the same customer to the same pet
+   * store from lines in two chunks; INSERT_MEMBERSHIPS leaves a link that is already there alone.
+   */
+  private long loadMemberships(Path file, BulkLoadJob job, BulkLoadFile.Chunk chunk,
+      Map<String, Long> emailOwners) throws IOException {
+    List<Membership> lines = readLines(file, chunk, "customer",
+        line -> new Membership(emailKey(line), requiredId(line, "customerId"),
+            petStoreIds(line)));
+
+    return commitChunk(job, BulkLoadChunk.Pass.MEMBERSHIPS, chunk, () -> {
+      List<String> emails = lines.stream().map(Membership::email).filter(Objects::nonNull)
+          .toList();
+      Map<String, Long> existing = existingCustomerIds(emails, job);
+      Set<List<Long>> memberships = new LinkedHashSet<>();
+
+      for (Membership line : lines) {
+        String email = line.email();
+        Long customerId = Objects.isNull(email) ? null : existing.get(email);
+
+        if (Objects.isNull(customerId)) {
+          long sourceId = Objects.isNull(email) ? line.customerId() : emailOwners.get(email);
+          customerId = job.getCustomerIdOffset() + sourceId;
+        }
+
+        for (long petStoreId : line.petStoreIds()) {
+          memberships.add(List.of(job.getPetStoreIdOffset() + petStoreId, customerId));
+        }
+      }
+
+      List<Object[]> rows = memberships.stream().map(List::toArray).toList();
+      return bulkLoadWriter.insert(BulkLoadWriter.INSERT_MEMBERSHIPS,
+          BulkLoadWriter.ON_DUPLICATE_MEMBERSHIP, rows);
+    });
+  }
+
+  /*
+   * Returns the lowest ID of the customers that already existed when the job started (ID up to
+   * the customer ID offset) for each of the emails that has one, keyed by email in lower case.
+   */
+  private Map<String, Long> existingCustomerIds(List<String> emails, BulkLoadJob job) {
+    List<String> distinct = emails.stream().filter(Objects::nonNull).distinct().toList();
+    Map<String, Long> existing = new HashMap<>();
+
+    for (int from = 0; from < distinct.size(); from += EMAIL_LOOKUP_SIZE) {
+      List<String> batch =
+          distinct.subList(from, Math.min(distinct.size(), from + EMAIL_LOOKUP_SIZE));
+
+      for (Object[] row : customerDao.findIdsByEmails(batch, job.getCustomerIdOffset())) {
+        existing.merge(normalizeEmail((String) row[0]), ((Number) row[1]).longValue(),
+            Math::min);
+      }
+    }
+    return existing;
+  }
+
+  /*
+   * commitChunk method runs the writes of a chunk and saves its checkpoint in one transaction, so
+   * a chunk is loaded exactly once however often the job is resumed. Returns the rows written.
+   */
+  private long commitChunk(BulkLoadJob job, BulkLoadChunk.Pass pass, BulkLoadFile.Chunk chunk,
+      LongSupplier writes) {
+    return transactionTemplate.execute(status -> {
+      long rows = writes.getAsLong();
+      bulkLoadChunkDao.save(
+          new BulkLoadChunk(job.getJobId(), pass, chunk.index(), rows, Instant.now()));
+      return rows;
+    });
+  }
+
+  /*
+   * readLines method parses the lines of the chunk with the given "type" and maps each one with
+   * the reader. Only the type is parsed for the other lines.
+   */
+  private <T> List<T> readLines(Path file, BulkLoadFile.Chunk chunk, String type,
+      Function<JsonNode, T> reader) throws IOException {
+    List<T> results = new ArrayList<>();
+
+    BulkLoadFile.forEachLine(file, chunk, (line, length) -> {
+      if (type.equals(lineType(line, length))) {
+        results.add(reader.apply(objectMapper.readTree(line, 0, length)));
+      }
+    });
+    return results;
+  }
+
+  // Reads the top-level fields of the line until "type" is found, without building a tree.
+  private String lineType(byte[] line, int length) throws IOException {
+    try (JsonParser parser = objectMapper.getFactory().createParser(line, 0, length)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new IOException("Expected a JSON object but got "
+            + new String(line, 0, Math.min(length, 100), StandardCharsets.UTF_8));
+      }
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String name = parser.currentName();
+        parser.nextToken();
+
+        if ("type".equals(name)) {
+          return parser.getText();
+        }
+        parser.skipChildren();
+      }
+      return null;
+    }
+  }
+
+  private static String text(JsonNode line, String field) {
+    JsonNode value = line.get(field);
+    return Objects.isNull(value) || value.isNull() ? null : value.asText();
+  }
+
+  private static long requiredId(JsonNode line, String field) {
+    JsonNode value = line.get(field);
+
+    if (Objects.isNull(value) || !value.canConvertToLong() || value.asLong() <= 0) {
+      throw new IllegalArgumentException("Line without a valid " + field + ": " + line);
+    }
+    return value.asLong();
+  }
+
+  private static long[] petStoreIds(JsonNode line) {
+    JsonNode petStoreIds = line.path("petStoreIds");
+    long[] ids = new long[petStoreIds.size()];
+
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = petStoreIds.get(i).asLong();
+    }
+    return ids;
+  }
+
+  private static String emailKey(JsonNode line) {
+    return normalizeEmail(text(line, "customerEmail"));
+  }
+
+  private static String normalizeEmail(String email) {
+    return StringUtils.hasText(email) ? email.trim().toLowerCase(Locale.ROOT) : null;
+  }
+
+}
@@ -0,0 +1,274 @@
+package pet.store.config;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Admission control in front of the connection pool (pet-store.admission.* in application.yaml).
+ * 
+ * Every request of a client (see ClientIdResolver) first takes a token from the client's token
+ * bucket, which refills at client-rate tokens per second and holds up to client-burst tokens. A
+ * client that is out of tokens gets 429 too many requests with the number of seconds until its
+ * next token in Retry-After. Each bucket is a single AtomicLong (the generic cell rate algorithm),
+ * updated with compare-and-set, and the buckets are kept in a Caffeine map, so there is no lock
+ * shared by all requests. Buckets of clients that have been idle for a while are dropped.
+ * 
+ * The request then needs a permit to run: reads (GET, HEAD) and writes (POST, PUT, PATCH, DELETE)
+ * have separate limits, so a burst of writes cannot take every pool connection from the reads
+ * and the other way round. The limits are worked out from the connection pools:
+ * 
+ * - Connections of the primary pool (spring.datasource.hikari.maximum-pool-size) are first kept
+ *   back for the work that does not come through this filter: one per background delete thread
+ *   (pet-store.purge.threads), one per scheduler thread for the statistics reconciliation
+ *   (spring.task.scheduling.pool.size) and one for the customer queue writer when the queue is on.
+ * - Writes get max-concurrent-writes of the remaining primary connections.
+ * - With read replica routing on, reads run on the replicas and get as many permits as the replica
+ *   pools have connections together. Otherwise they get the primary connections the writes left.
+ * - max-concurrent-reads, if set above 0, lowers the read limit further.
+ * 
+ * So admitted requests do not queue for a connection, except for reads that fall back to the
+ * primary (read-your-writes, or every replica marked down), which share it with the writes. A
+ * request that cannot get a permit within acquire-timeout gets a fast 503 with a Retry-After header
+ * instead of waiting on the pool until it times out. This also caps the requests in progress when
+ * requests run on virtual threads.
+ * 
+ * A request that goes async (a streamed export, for example) keeps its permit until the async
+ * processing completes, fails or times out, not just until the servlet thread returns.
+ * 
+ * Rejections are counted in the pet.store.admission.rejected metric, tagged with the reason. A
+ * client-rate of 0 turns off the per-client limit. Actuator requests and OPTIONS requests (CORS
+ * preflights, which never touch the database) are not limited.
+ */
+@Component
+@ConditionalOnProperty(prefix = "pet-store.admission", name = "enabled", havingValue = "true",
+    matchIfMissing = true)
+@Slf4j
+public class AdmissionControlFilter extends OncePerRequestFilter {
+
+  private static final Set<String> READ_METHODS = Set.of("GET", "HEAD");
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+  @Autowired
+  private ClientIdResolver clientIdResolver;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  private final Semaphore readPermits;
+  private final Semaphore writePermits;
+  private final long acquireTimeoutMillis;
+  private final long emissionIntervalNanos;
+  private final long burstToleranceNanos;
+  private final Cache<String, AtomicLong> buckets;
+
+  public AdmissionControlFilter(
+      @Value("${spring.datasource.hikari.maximum-pool-size:10}") int maximumPoolSize,
+      @Value("${pet-store.purge.threads:2}") int purgeThreads,
+      @Value("${spring.task.scheduling.pool.size:1}") int schedulerThreads,
+      @Value("${pet-store.customer-queue.enabled:false}") boolean customerQueueEnabled,
+      ObjectProvider<DataSourceRoutingProperties> routingProperties,
+      @Value("${pet-store.admission.max-concurrent-reads:0}") int maxConcurrentReads,
+      @Value("${pet-store.admission.max-concurrent-writes:3}") int maxConcurrentWrites,
+      @Value("${pet-store.admission.acquire-timeout:250ms}") Duration acquireTimeout,
+      @Value("${pet-store.admission.client-rate:100}") double clientRate,
+      @Value("${pet-store.admission.client-burst:200}") int clientBurst) {
+    int background = purgeThreads + schedulerThreads + (customerQueueEnabled ? 1 : 0);
+    int replicaConnections = replicaConnections(routingProperties.getIfAvailable());
+    int primary = Math.max(replicaConnections > 0 ? 1 : 2, maximumPoolSize - background);
+    int writes = Math.max(1,
+        Math.min(maxConcurrentWrites, replicaConnections > 0 ? primary : primary - 1));
+    int reads = replicaConnections > 0 ? replicaConnections : primary - writes;
+
+    if (maxConcurrentReads > 0) {
+      reads = Math.min(reads, maxConcurrentReads);
+    }
+
+    log.info("Admitting up to {} reads ({}) and {} writes at once ({} of {} primary connections"
+        + " kept for background work)", reads, replicaConnections > 0 ? "replicas" : "primary",
+        writes, maximumPoolSize - primary, maximumPoolSize);
+    this.readPermits = new Semaphore(reads, true);
+    this.writePermits = new Semaphore(writes, true);
+    this.acquireTimeoutMillis = acquireTimeout.toMillis();
+    this.emissionIntervalNanos = clientRate > 0 ? (long) (NANOS_PER_SECOND / clientRate) : 0;
+    this.burstToleranceNanos = emissionIntervalNanos * Math.max(0, clientBurst - 1);
+    this.buckets = Caffeine.newBuilder().maximumSize(100_000)
+        .expireAfterAccess(Duration.ofMinutes(10)).build();
+  }
+
+  // Total connections of the replica pools, or 0 when reads are not routed to replicas.
+  private static int replicaConnections(DataSourceRoutingProperties routingProperties) {
+    if (routingProperties == null || !routingProperties.isEnabled()) {
+      return 0;
+    }
+    return routingProperties.getReplicas().stream()
+        .mapToInt(DataSourceRoutingProperties.Replica::getMaximumPoolSize).sum();
+  }
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return request.getRequestURI().startsWith("/actuator")
+        || "OPTIONS".equals(request.getMethod());
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    String clientId = clientIdResolver.resolve(request);
+    long waitNanos = takeToken(clientId);
+
+    if (waitNanos > 0) {
+      log.warn("Rejected {} {} from client {}: rate limit exceeded", request.getMethod(),
+          request.getRequestURI(), clientId);
+      reject(response, HttpStatus.TOO_MANY_REQUESTS, "rate", waitNanos,
+          "Too many requests from this client, please retry later");
+      return;
+    }
+
+    boolean read = READ_METHODS.contains(request.getMethod());
+    Semaphore permits = read ? readPermits : writePermits;
+
+    if (!acquirePermit(permits)) {
+      log.warn("Rejected {} {}: no {} admission permit available", request.getMethod(),
+          request.getRequestURI(), read ? "read" : "write");
+      reject(response, HttpStatus.SERVICE_UNAVAILABLE, read ? "reads" : "writes",
+          NANOS_PER_SECOND, "Server is busy, please retry");
+      return;
+    }
+
+    Runnable release = releaseOnce(permits);
+
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (request.isAsyncStarted()) {
+        request.getAsyncContext().addListener(new ReleasePermitListener(release));
+      } else {
+        release.run();
+      }
+    }
+  }
+
+  /*
+   * releaseOnce method returns a task that gives the permit back the first time it runs. The async
+   * listener can be called more than once (an error followed by complete), but the permit must
+   * only be released once.
+   */
+  private static Runnable releaseOnce(Semaphore permits) {
+    AtomicBoolean released = new AtomicBoolean();
+
+    return () -> {
+      if (released.compareAndSet(false, true)) {
+        permits.release();
+      }
+    };
+  }
+
+  /*
+   * takeToken method takes a token from the client's bucket. The bucket holds the theoretical
+   * arrival time (TAT) of the client's next request; a request is allowed when it arrives no more
+   * than the burst tolerance before the TAT, which then moves on by one emission interval. Returns
+   * 0 when the request is allowed, otherwise how long until it would be.
+   */
+  private long takeToken(String clientId) {
+    if (emissionIntervalNanos == 0) {
+      return 0;
+    }
+
+    AtomicLong bucket = buckets.get(clientId, id -> new AtomicLong(System.nanoTime()));
+
+    while (true) {
+      long now = System.nanoTime();
+      long tat = bucket.get();
+      long start = tat - now > 0 ? tat : now;
+      long wait = start - burstToleranceNanos - now;
+
+      if (wait > 0) {
+        return wait;
+      }
+
+      if (bucket.compareAndSet(tat, start + emissionIntervalNanos)) {
+        return 0;
+      }
+    }
+  }
+
+  private boolean acquirePermit(Semaphore permits) {
+    try {
+      return permits.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    }
+  }
+
+  private void reject(HttpServletResponse response, HttpStatus status, String reason,
+      long retryAfterNanos, String message) throws IOException {
+    meterRegistry.counter("pet.store.admission.rejected", "reason", reason).increment();
+
+    long retryAfterSeconds =
+        Math.max(1, (retryAfterNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+    response.setStatus(status.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfterSeconds));
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response.getWriter().write("{\"message\":\"" + message + "\"}");
+  }
+
+  /*
+   * Releases the permit of an async request when its async processing ends.
+   */
+  private static class ReleasePermitListener implements AsyncListener {
+
+    private final Runnable release;
+
+    ReleasePermitListener(Runnable release) {
+      this.release = release;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      release.run();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      release.run();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      release.run();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      /* startAsync was called again; this listener has to be added to the new cycle. */
+      event.getAsyncContext().addListener(this);
+    }
+
+  }
+
+}
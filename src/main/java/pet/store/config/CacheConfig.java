@@ -0,0 +1,42 @@
+package pet.store.config;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/*
+ * This class sets up the in-process cache of PetStoreData objects keyed by pet store ID.
+ * 
+ * The cache is a Caffeine cache with a maximum size and a time to live (pet-store.cache.* in
+ * application.yaml). Statistics are recorded so the actuator publishes the cache.gets (hit/miss),
+ * cache.evictions and cache.size metrics for it.
+ * 
+ * The cache manager is wrapped in a TransactionAwareCacheManagerProxy. Puts and evictions made
+ * inside a transaction are held back until the transaction commits. That alone does not stop a
+ * read that started before a write from caching the old pet store after the write evicted it, so
+ * every cached PetStoreData carries its version and is checked against the version column before
+ * it is used (see PetStoreService.retrievePetStoreByPetStoreId). With read replica routing on, the
+ * pet stores put in the cache are always read from the primary, never from a replica.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+  public static final String PET_STORE_CACHE = "petStores";
+
+  @Bean
+  public CacheManager cacheManager(@Value("${pet-store.cache.maximum-size:1000}") long maximumSize,
+      @Value("${pet-store.cache.time-to-live:10m}") Duration timeToLive) {
+    CaffeineCacheManager cacheManager = new CaffeineCacheManager(PET_STORE_CACHE);
+    cacheManager.setCaffeine(Caffeine.newBuilder().maximumSize(maximumSize)
+        .expireAfterWrite(timeToLive).recordStats());
+    return new TransactionAwareCacheManagerProxy(cacheManager);
+  }
+
+}
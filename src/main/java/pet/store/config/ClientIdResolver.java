@@ -0,0 +1,65 @@
+package pet.store.config;
+
+import java.security.Principal;
+import java.util.Optional;
+import java.util.Set;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import jakarta.servlet.http.HttpServletRequest;
+
+/*
+ * Works out which client sent a request: the authenticated principal when there is one, otherwise
+ * the remote address of the request. The X-Client-Id header is only used when the request comes
+ * from one of the proxies in pet-store.client-id.trusted-proxies (a comma separated list of
+ * addresses), which set it for the clients behind them. Any other client could send a different
+ * X-Client-Id with every request and so get a fresh rate limit bucket each time.
+ */
+@Component
+public class ClientIdResolver {
+
+  public static final String CLIENT_ID_HEADER = "X-Client-Id";
+
+  private final Set<String> trustedProxies;
+
+  public ClientIdResolver(
+      @Value("${pet-store.client-id.trusted-proxies:}") Set<String> trustedProxies) {
+    this.trustedProxies = Set.copyOf(trustedProxies);
+  }
+
+  public String resolve(HttpServletRequest request) {
+    Principal principal = request.getUserPrincipal();
+
+    if (principal != null) {
+      return "user:" + principal.getName();
+    }
+
+    String remoteAddress = request.getRemoteAddr();
+
+    if (trustedProxies.contains(remoteAddress)) {
+      String clientId = request.getHeader(CLIENT_ID_HEADER);
+
+      if (StringUtils.hasText(clientId)) {
+        return "client:" + clientId.trim();
+      }
+    }
+    return remoteAddress;
+  }
+
+  /*
+   * Returns the client of the request handled by the current thread, or empty when the thread is
+   * not handling a request (for example a background delete job).
+   */
+  public Optional<String> currentClientId() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+    if (attributes instanceof ServletRequestAttributes servletAttributes) {
+      return Optional.of(resolve(servletAttributes.getRequest()));
+    }
+    return Optional.empty();
+  }
+
+}
@@ -0,0 +1,31 @@
+package pet.store.config;
+
+import java.util.Objects;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.servlet.HandlerMapping;
+import jakarta.servlet.http.HttpServletRequest;
+
+/*
+ * Describes the endpoint the current thread is serving, such as "GET /pet_store/{petStoreId}",
+ * for the diagnostics. Work done outside a request (background jobs) is described by the name of
+ * the thread instead.
+ */
+final class CurrentEndpoint {
+
+  private CurrentEndpoint() {}
+
+  static String describe() {
+    RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+
+    if (attributes instanceof ServletRequestAttributes servletAttributes) {
+      HttpServletRequest request = servletAttributes.getRequest();
+      Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+      String uri = Objects.isNull(pattern) ? request.getRequestURI() : pattern.toString();
+      return request.getMethod() + " " + uri;
+    }
+    return "thread " + Thread.currentThread().getName();
+  }
+
+}
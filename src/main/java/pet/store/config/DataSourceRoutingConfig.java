@@ -0,0 +1,70 @@
+package pet.store.config;
+
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import com.zaxxer.hikari.HikariDataSource;
+
+/*
+ * Sets up read replica routing when pet-store.datasource.routing.enabled is true. Otherwise Spring
+ * Boot creates the single spring.datasource pool as before.
+ * 
+ * The primary pool is built from spring.datasource (with the spring.datasource.hikari settings) and
+ * each replica gets its own pool. The data source used by JPA is the routing data source wrapped
+ * in a LazyConnectionDataSourceProxy. Replica pools do not fail the startup when a replica is down;
+ * the replica is simply marked down when a connection is requested.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "pet-store.datasource.routing", name = "enabled",
+    havingValue = "true")
+@EnableConfigurationProperties(DataSourceRoutingProperties.class)
+public class DataSourceRoutingConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+    HikariDataSource dataSource = dataSourceProperties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class).build();
+    dataSource.setPoolName("primary");
+    return dataSource;
+  }
+
+  @Bean
+  public ReadReplicaRoutingDataSource readReplicaRoutingDataSource(
+      HikariDataSource primaryDataSource, DataSourceRoutingProperties properties,
+      ClientIdResolver clientIdResolver) {
+    List<HikariDataSource> replicas = new ArrayList<>();
+
+    for (DataSourceRoutingProperties.Replica replica : properties.getReplicas()) {
+      HikariDataSource dataSource = new HikariDataSource();
+      dataSource.setPoolName("replica-" + replicas.size());
+      dataSource.setJdbcUrl(replica.getUrl());
+      dataSource.setUsername(replica.getUsername());
+      dataSource.setPassword(replica.getPassword());
+      dataSource.setMaximumPoolSize(replica.getMaximumPoolSize());
+      dataSource.setConnectionTimeout(replica.getConnectionTimeout().toMillis());
+      dataSource.setReadOnly(true);
+      dataSource.setInitializationFailTimeout(-1);
+      replicas.add(dataSource);
+    }
+
+    return new ReadReplicaRoutingDataSource(primaryDataSource, replicas,
+        new ReadYourWritesTracker(clientIdResolver, properties.getReadYourWritesWindow()),
+        properties.getMarkDownPeriod().toNanos());
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(ReadReplicaRoutingDataSource readReplicaRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(readReplicaRoutingDataSource);
+  }
+
+}
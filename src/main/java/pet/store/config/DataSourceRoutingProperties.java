@@ -0,0 +1,39 @@
+package pet.store.config;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * Settings of the read replica routing (pet-store.datasource.routing.* in application.yaml).
+ * 
+ * replicas lists the replica databases that read-only transactions are spread over.
+ * mark-down-period is how long a replica is skipped after a connection to it fails.
+ * read-your-writes-window is how long the reads of a client stay on the primary after the client
+ * committed a write, so the client sees its own write even if the replicas lag behind. A zero
+ * window turns this off.
+ */
+@Data
+@NoArgsConstructor
+@ConfigurationProperties("pet-store.datasource.routing")
+public class DataSourceRoutingProperties {
+
+  private boolean enabled;
+  private List<Replica> replicas = new ArrayList<>();
+  private Duration markDownPeriod = Duration.ofSeconds(30);
+  private Duration readYourWritesWindow = Duration.ZERO;
+
+  @Data
+  @NoArgsConstructor
+  public static class Replica {
+    private String url;
+    private String username;
+    private String password;
+    private int maximumPoolSize = 10;
+    private Duration connectionTimeout = Duration.ofSeconds(1);
+  }
+
+}
@@ -0,0 +1,50 @@
+package pet.store.config;
+
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import io.micrometer.core.instrument.MeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+/*
+ * This class sets up the SQL diagnostics, which replace spring.jpa.show-sql:
+ * 
+ * The "dataSource" bean is wrapped with datasource-proxy so SlowQueryListener sees every
+ * statement with its bound parameters and logs those slower than
+ * pet-store.diagnostics.slow-query-threshold. SqlStatementCounter listens on the same proxy to
+ * count the statements of each request. Transactions are timed by
+ * TransactionDiagnosticsAspect and slow ones are kept by SlowTransactionLog.
+ * 
+ * All logging goes through the asynchronous appender set up in logback-spring.xml, so request
+ * threads never wait on the console.
+ */
+@Configuration
+public class DiagnosticsConfig {
+
+  @Bean
+  public static BeanPostProcessor slowQueryDataSourceProxy(
+      @Value("${pet-store.diagnostics.slow-query-threshold:200ms}") Duration threshold,
+      ObjectProvider<MeterRegistry> meterRegistry,
+      ObjectProvider<SqlStatementCounter> sqlStatementCounter) {
+    return new BeanPostProcessor() {
+      @Override
+      public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!"dataSource".equals(beanName) || !(bean instanceof DataSource dataSource)
+            || bean instanceof ProxyDataSource) {
+          return bean;
+        }
+
+        SlowQueryListener listener = new SlowQueryListener(threshold.toMillis(),
+            meterRegistry.getObject().counter("pet.store.slow.queries"));
+        return ProxyDataSourceBuilder.create(dataSource).name("pet-store").listener(listener)
+            .listener(sqlStatementCounter.getObject()).build();
+      }
+    };
+  }
+
+}
@@ -0,0 +1,39 @@
+package pet.store.config;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/*
+ * This class sets up the built-in metrics. They are published by the actuator at /actuator/metrics
+ * and /actuator/prometheus:
+ * 
+ * pet.store.controller and pet.store.service - timers (p50/p95/p99) for each method of
+ * PetStoreController and PetStoreService, from the @Timed annotation on those classes.
+ * 
+ * pet.store.request.sql.statements and pet.store.request.entity.loads - per request counts from
+ * SqlStatementCounter, recorded by RequestSqlMetricsFilter. Statements are counted on the data
+ * source (see DiagnosticsConfig), entity loads by a Hibernate interceptor.
+ * 
+ * hikaricp.connections.acquire - time spent waiting for a pooled connection, published by Spring
+ * Boot with the percentiles set in application.yaml.
+ */
+@Configuration
+public class MetricsConfig {
+
+  @Bean
+  public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+    return new TimedAspect(meterRegistry);
+  }
+
+  @Bean
+  public HibernatePropertiesCustomizer sqlStatementCounterCustomizer(
+      SqlStatementCounter sqlStatementCounter) {
+    return hibernateProperties -> hibernateProperties.put(AvailableSettings.INTERCEPTOR,
+        sqlStatementCounter);
+  }
+
+}
@@ -0,0 +1,173 @@
+package pet.store.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+
+/*
+ * Data source that sends read-only transactions to the replicas and everything else to the
+ * primary.
+ * 
+ * A connection is taken from a replica when the current transaction is read only
+ * (@Transactional(readOnly = true)) and the client has not written within the read-your-writes
+ * window. The replicas are used in turn (round robin). When a replica cannot hand out a connection
+ * it is marked down for the mark-down period and the next replica is tried; when no replica is
+ * available the primary is used, so a replica outage only moves the reads to the primary.
+ * 
+ * The decision is made when the connection is requested, so this data source must be wrapped in a
+ * LazyConnectionDataSourceProxy. The proxy only asks for the connection when the first statement
+ * runs, which is after the transaction has been marked read only.
+ * 
+ * Data that is shared between requests, such as the PetStoreData cache, must not be filled from a
+ * replica that lags behind. isReplicaTransaction() tells whether the current transaction reads from
+ * a replica, and the transactions started inside readFromPrimary() always read from the primary
+ * without counting as a write of the client.
+ */
+@Slf4j
+public class ReadReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+  private final DataSource primary;
+  private final List<HikariDataSource> replicas;
+  private final ReadYourWritesTracker readYourWritesTracker;
+  private final long markDownNanos;
+
+  // Transaction resource key that marks a transaction whose connection came from a replica.
+  private static final Object REPLICA_TRANSACTION = new Object();
+
+  private static final ThreadLocal<Boolean> PRIMARY_READS = new ThreadLocal<>();
+
+  private final AtomicInteger nextReplica = new AtomicInteger();
+  private final AtomicLongArray downUntil;
+
+  public ReadReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas,
+      ReadYourWritesTracker readYourWritesTracker, long markDownNanos) {
+    this.primary = primary;
+    this.replicas = List.copyOf(replicas);
+    this.readYourWritesTracker = readYourWritesTracker;
+    this.markDownNanos = markDownNanos;
+    this.downUntil = new AtomicLongArray(replicas.size());
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    if (Boolean.TRUE.equals(PRIMARY_READS.get())
+        && TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      return primary.getConnection();
+    }
+
+    if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+      readYourWritesTracker.recordWriteOnCommit();
+      return primary.getConnection();
+    }
+
+    if (!readYourWritesTracker.wroteRecently()) {
+      Connection connection = replicaConnection();
+
+      if (connection != null) {
+        markReplicaTransaction();
+        return connection;
+      }
+    }
+    return primary.getConnection();
+  }
+
+  /*
+   * isReplicaTransaction method returns true when the current transaction got its connection from
+   * a replica. It is false before the first statement of the transaction and when routing is off.
+   */
+  public static boolean isReplicaTransaction() {
+    return TransactionSynchronizationManager.hasResource(REPLICA_TRANSACTION);
+  }
+
+  /*
+   * readFromPrimary method runs the given read on the current thread with the read-only
+   * transactions started inside it sent to the primary. The read must start its own transaction
+   * (for example with a REQUIRES_NEW TransactionTemplate), because a transaction that already has
+   * a connection keeps it.
+   */
+  public static <T> T readFromPrimary(Supplier<T> read) {
+    Boolean previous = PRIMARY_READS.get();
+    PRIMARY_READS.set(Boolean.TRUE);
+
+    try {
+      return read.get();
+    } finally {
+      if (previous == null) {
+        PRIMARY_READS.remove();
+      } else {
+        PRIMARY_READS.set(previous);
+      }
+    }
+  }
+
+  // Marks the current transaction as reading from a replica until it completes.
+  private static void markReplicaTransaction() {
+    if (!TransactionSynchronizationManager.isSynchronizationActive()
+        || TransactionSynchronizationManager.hasResource(REPLICA_TRANSACTION)) {
+      return;
+    }
+
+    TransactionSynchronizationManager.bindResource(REPLICA_TRANSACTION, Boolean.TRUE);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void suspend() {
+        TransactionSynchronizationManager.unbindResource(REPLICA_TRANSACTION);
+      }
+
+      @Override
+      public void resume() {
+        TransactionSynchronizationManager.bindResource(REPLICA_TRANSACTION, Boolean.TRUE);
+      }
+
+      @Override
+      public void afterCompletion(int status) {
+        TransactionSynchronizationManager.unbindResourceIfPossible(REPLICA_TRANSACTION);
+      }
+    });
+  }
+
+  @Override
+  public Connection getConnection(String username, String password) throws SQLException {
+    throw new SQLFeatureNotSupportedException("Routing data source uses the pool credentials");
+  }
+
+  /*
+   * replicaConnection method tries each replica that is not marked down, starting with the next one
+   * in turn. Returns null when no replica could hand out a connection.
+   */
+  private Connection replicaConnection() {
+    for (int attempt = 0; attempt < replicas.size(); attempt++) {
+      int index = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+
+      if (System.nanoTime() - downUntil.get(index) < 0) {
+        continue;
+      }
+
+      HikariDataSource replica = replicas.get(index);
+
+      try {
+        return replica.getConnection();
+      } catch (SQLException e) {
+        downUntil.set(index, System.nanoTime() + markDownNanos);
+        log.warn("Replica {} marked down: {}", replica.getPoolName(), e.getMessage());
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public void close() {
+    replicas.forEach(HikariDataSource::close);
+  }
+
+}
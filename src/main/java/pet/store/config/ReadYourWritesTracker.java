@@ -0,0 +1,54 @@
+package pet.store.config;
+
+import java.time.Duration;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/*
+ * Remembers which clients committed a write in the last read-your-writes window. The routing data
+ * source sends the reads of those clients to the primary. Entries expire on their own after the
+ * window, and the number of clients tracked is bounded.
+ */
+public class ReadYourWritesTracker {
+
+  private static final long MAX_CLIENTS = 100_000;
+
+  private final ClientIdResolver clientIdResolver;
+  private final Cache<String, Boolean> recentWriters;
+
+  public ReadYourWritesTracker(ClientIdResolver clientIdResolver, Duration window) {
+    this.clientIdResolver = clientIdResolver;
+    this.recentWriters = window.isZero() ? null
+        : Caffeine.newBuilder().maximumSize(MAX_CLIENTS).expireAfterWrite(window).build();
+  }
+
+  /*
+   * Called when a write transaction gets its connection. The client of the current request is
+   * recorded once the transaction commits; a rolled back transaction is not recorded.
+   */
+  public void recordWriteOnCommit() {
+    if (recentWriters == null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+
+    clientIdResolver.currentClientId().ifPresent(clientId -> TransactionSynchronizationManager
+        .registerSynchronization(new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            recentWriters.put(clientId, Boolean.TRUE);
+          }
+        }));
+  }
+
+  public boolean wroteRecently() {
+    if (recentWriters == null) {
+      return false;
+    }
+
+    return clientIdResolver.currentClientId()
+        .map(clientId -> recentWriters.getIfPresent(clientId) != null).orElse(false);
+  }
+
+}
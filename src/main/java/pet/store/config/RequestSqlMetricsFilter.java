@@ -0,0 +1,72 @@
+package pet.store.config;
+
+import java.io.IOException;
+import java.util.Objects;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+/*
+ * Records how many SQL statements and entity loads each request caused.
+ * 
+ * The counts come from SqlStatementCounter and are published as the
+ * pet.store.request.sql.statements and pet.store.request.entity.loads distribution summaries,
+ * tagged with the HTTP method and the URI template of the endpoint. A high p99 on one endpoint
+ * points to an N+1 query path.
+ * 
+ * The counts are kept per thread, so only the work done on the request thread is counted.
+ * Asynchronous requests (the NDJSON export, which streams on an MVC task executor thread) are left
+ * out of the metric instead of being recorded with the few statements run before the async start.
+ * Work on other threads, such as the chunked purge of a deleted pet store, is not counted either.
+ */
+@Component
+public class RequestSqlMetricsFilter extends OncePerRequestFilter {
+
+  @Autowired
+  private SqlStatementCounter sqlStatementCounter;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Override
+  protected boolean shouldNotFilter(HttpServletRequest request) {
+    return request.getRequestURI().startsWith("/actuator");
+  }
+
+  @Override
+  protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+      FilterChain filterChain) throws ServletException, IOException {
+    sqlStatementCounter.reset();
+
+    try {
+      filterChain.doFilter(request, response);
+    } finally {
+      if (!request.isAsyncStarted()) {
+        recordCounts(request);
+      }
+    }
+  }
+
+  private void recordCounts(HttpServletRequest request) {
+    Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+    String uri = Objects.isNull(pattern) ? "UNKNOWN" : pattern.toString();
+
+    record("pet.store.request.sql.statements", request.getMethod(), uri,
+        sqlStatementCounter.statements());
+    record("pet.store.request.entity.loads", request.getMethod(), uri,
+        sqlStatementCounter.entityLoads());
+  }
+
+  private void record(String name, String method, String uri, long amount) {
+    DistributionSummary.builder(name).tag("method", method).tag("uri", uri)
+        .publishPercentiles(0.5, 0.95, 0.99).register(meterRegistry).record(amount);
+  }
+
+}
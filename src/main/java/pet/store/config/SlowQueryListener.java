@@ -0,0 +1,70 @@
+package pet.store.config;
+
+import java.util.List;
+import java.util.stream.Collectors;
+import io.micrometer.core.instrument.Counter;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import net.ttddyy.dsproxy.proxy.ParameterSetOperation;
+
+/*
+ * Logs every SQL statement that took at least the slow query threshold, with its bound parameters
+ * and the endpoint that ran it, and counts it in the pet.store.slow.queries metric. Statements
+ * under the threshold cost one comparison. For a JDBC batch only the parameters of the first
+ * MAX_BATCH_ENTRIES entries are logged, and long parameter values are cut short.
+ */
+@Slf4j
+class SlowQueryListener implements QueryExecutionListener {
+
+  private static final int MAX_BATCH_ENTRIES = 5;
+  private static final int MAX_VALUE_LENGTH = 100;
+
+  private final long thresholdMillis;
+  private final Counter slowQueries;
+
+  SlowQueryListener(long thresholdMillis, Counter slowQueries) {
+    this.thresholdMillis = thresholdMillis;
+    this.slowQueries = slowQueries;
+  }
+
+  @Override
+  public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    /* Nothing to do before the statement runs. */
+  }
+
+  @Override
+  public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    if (execInfo.getElapsedTime() < thresholdMillis) {
+      return;
+    }
+
+    slowQueries.increment();
+
+    for (QueryInfo queryInfo : queryInfoList) {
+      log.warn("Slow query ({} ms, {}{}) from {}: {} parameters={}", execInfo.getElapsedTime(),
+          execInfo.isBatch() ? "batch of " + execInfo.getBatchSize() : "statement",
+          execInfo.isSuccess() ? "" : ", failed", CurrentEndpoint.describe(),
+          queryInfo.getQuery(), parameters(queryInfo));
+    }
+  }
+
+  private static String parameters(QueryInfo queryInfo) {
+    return queryInfo.getParametersList().stream().limit(MAX_BATCH_ENTRIES)
+        .map(entry -> entry.stream().map(SlowQueryListener::parameter)
+            .collect(Collectors.joining(", ", "[", "]")))
+        .collect(Collectors.joining(", "));
+  }
+
+  private static String parameter(ParameterSetOperation operation) {
+    Object[] args = operation.getArgs();
+    String value = args.length > 1 ? String.valueOf(args[1]) : "";
+
+    if (value.length() > MAX_VALUE_LENGTH) {
+      value = value.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+    return args[0] + "=" + value;
+  }
+
+}
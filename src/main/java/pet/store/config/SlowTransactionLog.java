@@ -0,0 +1,55 @@
+package pet.store.config;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/*
+ * Keeps the most recent slow transactions in a fixed size ring buffer
+ * (pet-store.diagnostics.slow-transaction-buffer-size entries). Adding an entry is one atomic
+ * increment and one array write, so it takes no lock; once the buffer is full the oldest entry is
+ * overwritten. The entries are served by the slowtransactions actuator endpoint.
+ */
+@Component
+public class SlowTransactionLog {
+
+  /*
+   * One slow transaction: when it started, the @Transactional method, the endpoint it ran for,
+   * how long it took, how many SQL statements it ran and whether it ended with an exception.
+   */
+  public record SlowTransaction(Instant startedAt, String method, String endpoint,
+      long durationMillis, long statements, boolean readOnly, String outcome) {
+  }
+
+  private final AtomicReferenceArray<SlowTransaction> entries;
+  private final AtomicLong next = new AtomicLong();
+
+  public SlowTransactionLog(
+      @Value("${pet-store.diagnostics.slow-transaction-buffer-size:100}") int size) {
+    this.entries = new AtomicReferenceArray<>(size);
+  }
+
+  public void add(SlowTransaction slowTransaction) {
+    entries.set((int) (next.getAndIncrement() % entries.length()), slowTransaction);
+  }
+
+  // Returns the slow transactions in the buffer, newest first.
+  public List<SlowTransaction> recent() {
+    long last = next.get();
+    List<SlowTransaction> recent = new ArrayList<>();
+
+    for (long i = last - 1; i >= 0 && i >= last - entries.length(); i--) {
+      SlowTransaction slowTransaction = entries.get((int) (i % entries.length()));
+
+      if (slowTransaction != null) {
+        recent.add(slowTransaction);
+      }
+    }
+    return recent;
+  }
+
+}
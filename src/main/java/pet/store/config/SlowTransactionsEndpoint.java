@@ -0,0 +1,25 @@
+package pet.store.config;
+
+import java.util.List;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/*
+ * Actuator endpoint /actuator/slowtransactions. Returns the most recent slow transactions kept by
+ * SlowTransactionLog, newest first.
+ */
+@Component
+@Endpoint(id = "slowtransactions")
+public class SlowTransactionsEndpoint {
+
+  @Autowired
+  private SlowTransactionLog slowTransactionLog;
+
+  @ReadOperation
+  public List<SlowTransactionLog.SlowTransaction> slowTransactions() {
+    return slowTransactionLog.recent();
+  }
+
+}
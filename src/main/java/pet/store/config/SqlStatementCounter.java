@@ -0,0 +1,62 @@
+package pet.store.config;
+
+import java.util.List;
+import org.hibernate.Interceptor;
+import org.hibernate.type.Type;
+import org.springframework.stereotype.Component;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+
+/*
+ * Counts the SQL statements run and the entities Hibernate loads on the current thread.
+ * 
+ * Statements are counted by the datasource-proxy listener installed on the "dataSource" bean (see
+ * DiagnosticsConfig), so every statement is seen, whether it comes from Hibernate, a JdbcTemplate
+ * or a native query. A JDBC batch counts as one statement, since it is sent in one round trip.
+ * Entity loads are counted by the Hibernate session factory interceptor (see MetricsConfig).
+ * RequestSqlMetricsFilter resets the counts when a request starts
+ * and records them when the request ends, so the counts belong to a single request. Statements run
+ * on other threads (async requests, background jobs) are counted on those threads and never
+ * recorded.
+ */
+@Component
+public class SqlStatementCounter implements QueryExecutionListener, Interceptor {
+
+  private static final ThreadLocal<long[]> COUNTS = ThreadLocal.withInitial(() -> new long[2]);
+
+  private static final int STATEMENTS = 0;
+  private static final int ENTITY_LOADS = 1;
+
+  @Override
+  public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    /* Counted once the statement has run. */
+  }
+
+  @Override
+  public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+    COUNTS.get()[STATEMENTS]++;
+  }
+
+  @Override
+  public boolean onLoad(Object entity, Object id, Object[] state, String[] propertyNames,
+      Type[] types) {
+    COUNTS.get()[ENTITY_LOADS]++;
+    return false;
+  }
+
+  public void reset() {
+    long[] counts = COUNTS.get();
+    counts[STATEMENTS] = 0;
+    counts[ENTITY_LOADS] = 0;
+  }
+
+  public long statements() {
+    return COUNTS.get()[STATEMENTS];
+  }
+
+  public long entityLoads() {
+    return COUNTS.get()[ENTITY_LOADS];
+  }
+
+}
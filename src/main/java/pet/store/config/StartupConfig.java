@@ -0,0 +1,21 @@
+package pet.store.config;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import pet.store.service.PetStoreStatsService;
+
+/*
+ * With spring.main.lazy-initialization (the fast-start profile) a bean is only created when it is
+ * first used. The beans listed here are still created at startup: a lazy PetStoreStatsService
+ * would not start its scheduled reconciliation until the first request needed it.
+ */
+@Configuration
+public class StartupConfig {
+
+  @Bean
+  public static LazyInitializationExcludeFilter eagerStartupBeans() {
+    return LazyInitializationExcludeFilter.forBeanTypes(PetStoreStatsService.class);
+  }
+
+}
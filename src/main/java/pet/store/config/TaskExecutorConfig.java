@@ -0,0 +1,74 @@
+package pet.store.config;
+
+import java.time.Duration;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.task.TaskExecutionAutoConfiguration;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.task.SimpleAsyncTaskExecutorBuilder;
+import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.AsyncAnnotationBeanPostProcessor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/*
+ * Task executors of the application.
+ * 
+ * petStorePurgeExecutor runs the background pet store deletes (DELETE
+ * /pet_store/{petStoreId}?async=true), apart from applicationTaskExecutor, which runs the NDJSON
+ * export, so long deletes and exports do not wait for each other. At most threads deletes run at
+ * once and queue-capacity more can wait; a delete beyond that is rejected with 503. On shutdown the
+ * running deletes get shutdown-timeout to finish. A delete stopped before it finishes leaves the
+ * pet store partly deleted (see PetStorePurgeService) and can be started again.
+ * 
+ * Spring Boot only creates applicationTaskExecutor when there is no other Executor bean, so it is
+ * declared here the way Spring Boot declares it: a thread pool from the spring.task.execution
+ * settings, or a virtual thread executor when spring.threads.virtual.enabled is true.
+ */
+@Configuration
+public class TaskExecutorConfig {
+
+  public static final String PURGE_EXECUTOR = "petStorePurgeExecutor";
+
+  @Value("${pet-store.purge.threads:2}")
+  private int threads;
+
+  @Value("${pet-store.purge.queue-capacity:100}")
+  private int queueCapacity;
+
+  @Value("${pet-store.purge.shutdown-timeout:30s}")
+  private Duration shutdownTimeout;
+
+  @Bean(name = PURGE_EXECUTOR)
+  public ThreadPoolTaskExecutor petStorePurgeExecutor() {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("pet-store-purge-");
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationMillis(shutdownTimeout.toMillis());
+    return executor;
+  }
+
+  @Lazy
+  @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+      AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+  @ConditionalOnThreading(Threading.PLATFORM)
+  public ThreadPoolTaskExecutor applicationTaskExecutor(ThreadPoolTaskExecutorBuilder builder) {
+    return builder.build();
+  }
+
+  @Lazy
+  @Bean(name = {TaskExecutionAutoConfiguration.APPLICATION_TASK_EXECUTOR_BEAN_NAME,
+      AsyncAnnotationBeanPostProcessor.DEFAULT_TASK_EXECUTOR_BEAN_NAME})
+  @ConditionalOnThreading(Threading.VIRTUAL)
+  public SimpleAsyncTaskExecutor applicationTaskExecutorVirtualThreads(
+      SimpleAsyncTaskExecutorBuilder builder) {
+    return builder.build();
+  }
+
+}
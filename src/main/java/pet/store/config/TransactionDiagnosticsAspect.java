@@ -0,0 +1,82 @@
+package pet.store.config;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/*
+ * Times every transaction started by a @Transactional method of the service classes.
+ * 
+ * The aspect runs outside the transaction interceptor, so the time includes the commit. It is
+ * recorded in the pet.store.transaction timer (percentiles and histogram buckets), tagged with the
+ * method, whether the transaction is read only and the outcome. A method that joins a transaction
+ * already in progress is not timed on its own. A transaction that takes at least
+ * pet-store.diagnostics.slow-transaction-threshold is also added to SlowTransactionLog, with the
+ * endpoint and the number of SQL statements it ran.
+ */
+@Aspect
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class TransactionDiagnosticsAspect {
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  @Autowired
+  private SlowTransactionLog slowTransactionLog;
+
+  @Autowired
+  private SqlStatementCounter sqlStatementCounter;
+
+  @Value("${pet-store.diagnostics.slow-transaction-threshold:500ms}")
+  private Duration slowTransactionThreshold;
+
+  @Around("@annotation(transactional) && within(pet.store.service..*)")
+  public Object timeTransaction(ProceedingJoinPoint joinPoint, Transactional transactional)
+      throws Throwable {
+    if (TransactionSynchronizationManager.isActualTransactionActive()) {
+      return joinPoint.proceed();
+    }
+
+    String method = joinPoint.getSignature().getDeclaringType().getSimpleName() + "."
+        + joinPoint.getSignature().getName();
+    Instant startedAt = Instant.now();
+    long statementsBefore = sqlStatementCounter.statements();
+    long start = System.nanoTime();
+    String outcome = "success";
+
+    try {
+      return joinPoint.proceed();
+    } catch (Throwable e) {
+      outcome = e.getClass().getSimpleName();
+      throw e;
+    } finally {
+      long nanos = System.nanoTime() - start;
+
+      Timer.builder("pet.store.transaction").tag("method", method)
+          .tag("readOnly", Boolean.toString(transactional.readOnly()))
+          .tag("outcome", "success".equals(outcome) ? "success" : "exception")
+          .publishPercentiles(0.5, 0.95, 0.99).publishPercentileHistogram()
+          .register(meterRegistry).record(Duration.ofNanos(nanos));
+
+      if (nanos >= slowTransactionThreshold.toNanos()) {
+        slowTransactionLog.add(new SlowTransactionLog.SlowTransaction(startedAt, method,
+            CurrentEndpoint.describe(), Duration.ofNanos(nanos).toMillis(),
+            sqlStatementCounter.statements() - statementsBefore, transactional.readOnly(),
+            outcome));
+      }
+    }
+  }
+
+}
@@ -2,22 +2,44 @@ package pet.store.controller;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PatchMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.micrometer.core.annotation.Timed;
 import lombok.extern.slf4j.Slf4j;
+import pet.store.controller.model.KeysetPage;
 import pet.store.controller.model.PetStoreCustomer;
 import pet.store.controller.model.PetStoreData;
+import pet.store.controller.model.PetStoreDeleteJob;
 import pet.store.controller.model.PetStoreEmployee;
+import pet.store.controller.model.PetStoreEmployeeResult;
+import pet.store.controller.model.PetStoreMultiGetResult;
+import pet.store.controller.model.PetStoreStatsData;
+import pet.store.controller.model.PetStoreSummary;
+import pet.store.service.CustomerRegistrationQueue;
+import pet.store.service.PetStoreExportService;
+import pet.store.service.PetStorePurgeService;
 import pet.store.service.PetStoreService;
+import pet.store.service.PetStoreStatsService;
 
 /*
  * Created PetStoreController class.
@@ -29,16 +51,34 @@ import pet.store.service.PetStoreService;
  * 
  * @Slf4j annotation added to create SLF4J logger.
  * 
+ * @Timed annotation added so every method is timed (p50/p95/p99) in the pet.store.controller
+ * metric.
+ * 
  * @Autowired added to PetStoreService as an instance variable.
  */
 @RestController
 @RequestMapping("/pet_store")
 @Slf4j
+@Timed(value = "pet.store.controller", percentiles = {0.5, 0.95, 0.99})
 public class PetStoreController {
 
+  private static final String MERGE_PATCH_JSON = "application/merge-patch+json";
+
   @Autowired
   private PetStoreService petStoreService;
 
+  @Autowired
+  private PetStoreExportService petStoreExportService;
+
+  @Autowired
+  private PetStorePurgeService petStorePurgeService;
+
+  @Autowired
+  private PetStoreStatsService petStoreStatsService;
+
+  @Autowired(required = false)
+  private CustomerRegistrationQueue customerRegistrationQueue;
+
   /*
    * Method to map HTTP POST request to "/pet_store" with 201 Created response. This method returns
    * a PetStoreData object and logs the request. savePetStore (from service class) is called that
@@ -49,21 +89,66 @@ public class PetStoreController {
   @ResponseStatus(code = HttpStatus.CREATED)
   public PetStoreData createPetStore(@RequestBody PetStoreData petStoreData) {
     log.info("Creating Pet Store {}", petStoreData);
-    return petStoreService.savePetStore(petStoreData);
+    return petStoreService.savePetStore(petStoreData, null);
   }
 
   /*
    * Method to update the existing pet store data with using the pet store Id. This method returns a
    * PetStoreData object and logs the request. savePetStore (from service class) is called that will
    * modify the pet store data to with new values.
+   * 
+   * The optional If-Match header holds the ETag the client last read. If it is given and the pet
+   * store has changed since, the update is refused with 412 precondition failed. The new ETag is
+   * returned in the response.
    */
 
   @PutMapping("/{petStoreId}")
-  public PetStoreData updatePetStore(@PathVariable Long petStoreId,
+  public ResponseEntity<PetStoreData> updatePetStore(@PathVariable Long petStoreId,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
       @RequestBody PetStoreData petStoreData) {
     petStoreData.setPetStoreId(petStoreId);
-    log.info("Updating Pet Store {}", petStoreData);
-    return petStoreService.savePetStore(petStoreData);
+    log.info("Updating Pet Store {} if version matches {}", petStoreData, ifMatch);
+    PetStoreData result = petStoreService.savePetStore(petStoreData, parseETag(ifMatch));
+    return ResponseEntity.ok().eTag(toETag(result.getVersion())).body(result);
+  }
+
+  /*
+   * Methods to partly update a pet store, an employee or a customer. They map HTTP PATCH requests
+   * with a JSON Merge Patch body (application/merge-patch+json or application/json): fields in the
+   * body are changed, fields set to null are cleared and fields left out are kept as they are.
+   * Only the changed columns are written, and a patch that changes nothing writes nothing.
+   * 
+   * The pet store PATCH takes the same optional If-Match header as the PUT and returns the pet
+   * store summary with the new ETag. These methods call patchPetStore(), patchEmployee() and
+   * patchCustomer() in the service class.
+   */
+
+  @PatchMapping(value = "/{petStoreId}",
+      consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+  public ResponseEntity<PetStoreSummary> patchPetStore(@PathVariable Long petStoreId,
+      @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+      @RequestBody JsonNode patch) {
+    log.info("Patching Pet Store with ID={} using {}", petStoreId, patch);
+    PetStoreSummary result = petStoreService.patchPetStore(petStoreId, patch, parseETag(ifMatch));
+    return ResponseEntity.ok().eTag(toETag(result.getVersion())).body(result);
+  }
+
+  @PatchMapping(value = "/{petStoreId}/employee/{employeeId}",
+      consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+  public PetStoreEmployee patchPetStoreEmployee(@PathVariable Long petStoreId,
+      @PathVariable Long employeeId, @RequestBody JsonNode patch) {
+    log.info("Patching employee with ID={} of pet store ID={} using {}", employeeId, petStoreId,
+        patch);
+    return petStoreService.patchEmployee(petStoreId, employeeId, patch);
+  }
+
+  @PatchMapping(value = "/{petStoreId}/customer/{customerId}",
+      consumes = {MERGE_PATCH_JSON, MediaType.APPLICATION_JSON_VALUE})
+  public PetStoreCustomer patchPetStoreCustomer(@PathVariable Long petStoreId,
+      @PathVariable Long customerId, @RequestBody JsonNode patch) {
+    log.info("Patching customer with ID={} of pet store ID={} using {}", customerId, petStoreId,
+        patch);
+    return petStoreService.patchCustomer(petStoreId, customerId, patch);
   }
 
   /*
@@ -81,33 +166,173 @@ public class PetStoreController {
     return petStoreService.saveEmployee(petStoreId, petStoreEmployee);
   }
 
+  /*
+   * Method to add or update many pet store employees in one call. Uses HTTP POST request to
+   * "/pet_store/{pet_store}/employees" with a JSON array of employees. Employees without an ID are
+   * added and employees with an ID are updated. This methods calls the saveEmployees() method in
+   * the service class and returns one result per employee, in request order.
+   */
+
+  @PostMapping("/{petStoreId}/employees")
+  public List<PetStoreEmployeeResult> addPetStoreEmployees(@PathVariable Long petStoreId,
+      @RequestBody List<PetStoreEmployee> petStoreEmployees) {
+    log.info("Saving {} pet store employees for pet store ID: {}", petStoreEmployees.size(),
+        petStoreId);
+    return petStoreService.saveEmployees(petStoreId, petStoreEmployees);
+  }
+
   /*
    * Method to add pet store customer. This method allows customer to be added to a pet store. using
    * HTTP POST request to "/pet_store/{pet_store}/customer" with 201 created response. This methods
    * calls the saveCustomer() method in the service class and returns the result of that method
    * call.
+   * 
+   * When the write-behind customer queue is enabled, a new customer (no customer ID) is queued
+   * instead and 202 accepted is returned; the customer is saved with the next batch. A full queue
+   * returns 429 too many requests.
    */
 
   @PostMapping("/{petStoreId}/customer")
-  @ResponseStatus(code = HttpStatus.CREATED)
-  public PetStoreCustomer addPetStoreCustomer(@PathVariable Long petStoreId,
+  public ResponseEntity<PetStoreCustomer> addPetStoreCustomer(@PathVariable Long petStoreId,
       @RequestBody PetStoreCustomer petStoreCustomer) {
+    if (Objects.nonNull(customerRegistrationQueue)
+        && Objects.isNull(petStoreCustomer.getCustomerId())) {
+      log.info("Queueing pet store customer for pet store ID: {}", petStoreId);
+      customerRegistrationQueue.submit(petStoreId, petStoreCustomer);
+      return ResponseEntity.accepted().body(petStoreCustomer);
+    }
+
     log.info("Adding pet store customer for pet store ID: {}", petStoreCustomer, petStoreId);
-    return petStoreService.saveCustomer(petStoreId, petStoreCustomer);
+    return ResponseEntity.status(HttpStatus.CREATED)
+        .body(petStoreService.saveCustomer(petStoreId, petStoreCustomer));
   }
 
   /*
-   * Method to list all pet stores. This methods returns a List of pet stores.
+   * Method to remove a customer from a pet store. Uses HTTP DELETE request to
+   * "/pet_store/{pet_store}/customer/{customerId}". Only the link between the customer and the pet
+   * store is removed; the customer is kept. This methods calls the removeCustomer() method in the
+   * service class and returns Map<String, String> with the message.
+   */
+
+  @DeleteMapping("/{petStoreId}/customer/{customerId}")
+  public Map<String, String> removePetStoreCustomer(@PathVariable Long petStoreId,
+      @PathVariable Long customerId) {
+    log.info("Removing customer with ID={} from pet store with ID={}", customerId, petStoreId);
+    petStoreService.removeCustomer(petStoreId, customerId);
+    return Map.of("message", "Customer with ID=" + customerId
+        + " was removed from Pet Store with ID=" + petStoreId + ".");
+  }
+
+  /*
+   * Method to list pet stores one page at a time. This methods returns a page of pet store
+   * summaries (no customers or employees) and the cursor for the next page.
    * 
-   * @GetMapping annotation is added, this annotation does not take a value. Calls
+   * @GetMapping annotation is added, this annotation does not take a value. The optional "after"
+   * parameter is the nextCursor from the previous page and "limit" is the page size (capped at
+   * 100). The optional city, state and zip parameters filter the pet stores. Calls
    * retrieveAllPetStore() method is the service class.
    * 
    */
 
   @GetMapping
-  public List<PetStoreData> retrieveAllPetStore() {
-    log.info("Retrieve all pet stores");
-    return petStoreService.retrieveAllPetStore();
+  public KeysetPage<PetStoreSummary, Long> retrieveAllPetStore(
+      @RequestParam(required = false) Long after,
+      @RequestParam(required = false) Integer limit, @RequestParam(required = false) String city,
+      @RequestParam(required = false) String state, @RequestParam(required = false) String zip) {
+    log.info("Retrieve pet stores after ID={} limit={} city={} state={} zip={}", after, limit, city,
+        state, zip);
+    return petStoreService.retrieveAllPetStore(after, limit, city, state, zip);
+  }
+
+  /*
+   * Methods to read many pet stores by ID in one round trip. GET "/pet_store?ids=1,2,3" takes the
+   * IDs as a request parameter and POST "/pet_store/lookup" takes them as a JSON array in the body,
+   * for lists too long for a URL. Both return the pet stores in the order of the IDs, with the IDs
+   * that do not exist in missingIds. Calls retrievePetStoresByIds() in the service class.
+   * 
+   */
+
+  @GetMapping(params = "ids")
+  public PetStoreMultiGetResult retrievePetStoresByIds(@RequestParam List<Long> ids) {
+    log.info("Retrieving pet stores with IDs={}", ids);
+    return petStoreService.retrievePetStoresByIds(ids);
+  }
+
+  @PostMapping("/lookup")
+  public PetStoreMultiGetResult lookupPetStores(@RequestBody List<Long> ids) {
+    log.info("Looking up pet stores with IDs={}", ids);
+    return petStoreService.retrievePetStoresByIds(ids);
+  }
+
+  /*
+   * Methods to search customers and employees. Each returns one page of results and the cursor
+   * for the next page, paged with "after" and "limit" like the pet store listing. The results are
+   * sorted by name (or job title) and the cursor is an opaque string to pass back as it is.
+   * 
+   * GET "/pet_store/customer" looks up customers by exact "email", or by "lastName" prefix
+   * (optionally narrowed by a "firstName" prefix). GET "/pet_store/employee" looks up employees by
+   * "lastName" prefix (optionally narrowed by "firstName" and "jobTitle" prefixes) or by "jobTitle"
+   * prefix. Both can be limited to one pet store with "petStoreId". Calls searchCustomers() and
+   * searchEmployees() in the service class.
+   * 
+   */
+
+  @GetMapping("/customer")
+  public KeysetPage<PetStoreCustomer, String> searchCustomers(
+      @RequestParam(required = false) String email,
+      @RequestParam(required = false) String lastName,
+      @RequestParam(required = false) String firstName,
+      @RequestParam(required = false) Long petStoreId,
+      @RequestParam(required = false) String after,
+      @RequestParam(required = false) Integer limit) {
+    log.info("Searching customers email={} lastName={} firstName={} petStoreId={} after={}",
+        email, lastName, firstName, petStoreId, after);
+    return petStoreService.searchCustomers(email, lastName, firstName, petStoreId, after, limit);
+  }
+
+  @GetMapping("/employee")
+  public KeysetPage<PetStoreEmployee, String> searchEmployees(
+      @RequestParam(required = false) String lastName,
+      @RequestParam(required = false) String firstName,
+      @RequestParam(required = false) String jobTitle,
+      @RequestParam(required = false) Long petStoreId,
+      @RequestParam(required = false) String after,
+      @RequestParam(required = false) Integer limit) {
+    log.info("Searching employees lastName={} firstName={} jobTitle={} petStoreId={} after={}",
+        lastName, firstName, jobTitle, petStoreId, after);
+    return petStoreService.searchEmployees(lastName, firstName, jobTitle, petStoreId, after,
+        limit);
+  }
+
+  /*
+   * Method to read the statistics of every pet store: the employee count, the customer count and
+   * the number of employees per job title. Uses HTTP GET "/pet_store/stats" and calls the
+   * retrieveStats() method in the statistics service class, which reads the maintained counters
+   * instead of counting the employee and customer rows.
+   */
+
+  @GetMapping("/stats")
+  public List<PetStoreStatsData> retrievePetStoreStats() {
+    log.info("Retrieving pet store statistics");
+    return petStoreStatsService.retrieveStats();
+  }
+
+  /*
+   * Method to export every pet store, employee and customer as NDJSON (one JSON object per line).
+   * 
+   * @GetMapping annotation maps HTTP GET "/pet_store/export". The response is streamed: the
+   * StreamingResponseBody calls exportAll() in the export service class, which writes the rows to
+   * the client as they are read from the database.
+   * 
+   */
+
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public StreamingResponseBody exportPetStores() {
+    log.info("Exporting all pet stores");
+    return outputStream -> {
+      long lines = petStoreExportService.exportAll(outputStream);
+      log.info("Exported {} lines", lines);
+    };
   }
 
   /*
@@ -118,12 +343,22 @@ public class PetStoreController {
    * the method as a parameter. Calls the retrievePetStoreByPetStoreId() method in the service
    * class.
    * 
+   * The version of the pet store is sent as the ETag. When the If-None-Match header of the request
+   * matches the current version, 304 not modified is returned and no PetStoreData is built.
+   * 
    */
 
   @GetMapping("/{petStoreId}")
-  public PetStoreData retrievePetStoreByPetStoreId(@PathVariable Long petStoreId) {
+  public ResponseEntity<PetStoreData> retrievePetStoreByPetStoreId(@PathVariable Long petStoreId,
+      WebRequest webRequest) {
     log.info("Retriving pet store with ID={}", petStoreId);
-    return petStoreService.retrievePetStoreByPetStoreId(petStoreId);
+
+    if (webRequest.checkNotModified(toETag(petStoreService.retrievePetStoreVersion(petStoreId)))) {
+      return null;
+    }
+
+    PetStoreData petStoreData = petStoreService.retrievePetStoreByPetStoreId(petStoreId);
+    return ResponseEntity.ok().eTag(toETag(petStoreData.getVersion())).body(petStoreData);
   }
 
   /*
@@ -134,13 +369,73 @@ public class PetStoreController {
    * parameter and returns Map<String, String> where the key is "message" and the value is the
    * deletion successful message.
    * 
+   * The delete runs as a series of short transactions, so it is not atomic. If it fails part way
+   * (the response is an error) the pet store is left partly deleted: some of its employees and
+   * customer links are gone but the pet store is still there. Sending the DELETE again finishes it.
+   * 
+   * With async=true the delete runs in the background instead. 202 accepted is returned straight
+   * away with the "jobId" of the delete, which can be followed with GET
+   * /pet_store/delete_job/{jobId}. A FAILED job leaves the same partial state. When too many
+   * background deletes are waiting, 503 is returned with a Retry-After header.
+   * 
    */
   
   @DeleteMapping("/{petStoreId}")
-  public Map<String, String> deletePetStorerById(@PathVariable Long petStoreId) {
+  public ResponseEntity<Map<String, String>> deletePetStorerById(@PathVariable Long petStoreId,
+      @RequestParam(defaultValue = "false") boolean async) {
+    if (async) {
+      log.info("Starting background delete of Pet Store with ID={}", petStoreId);
+      PetStoreDeleteJob job = petStorePurgeService.startPurge(petStoreId);
+      return ResponseEntity.accepted().body(Map.of("message",
+          "Deletion of Pet Store with ID=" + petStoreId + " was started.", "jobId",
+          job.getJobId()));
+    }
+
     log.info("Deleting Pet Store with ID={}", petStoreId);
     petStoreService.deletePetStoreById(petStoreId);
-    return Map.of("message", "Deletion of Pet Store with ID=" + petStoreId + " was successful.");
+    return ResponseEntity.ok(
+        Map.of("message", "Deletion of Pet Store with ID=" + petStoreId + " was successful."));
+  }
+
+  /*
+   * Method to read the status of a background pet store delete by its job ID. Calls the
+   * retrieveJob() method in the purge service class.
+   */
+
+  @GetMapping("/delete_job/{jobId}")
+  public PetStoreDeleteJob retrieveDeleteJob(@PathVariable String jobId) {
+    log.info("Retrieving delete job with ID={}", jobId);
+    return petStorePurgeService.retrieveJob(jobId);
   }
   
+  /*
+   * ETag helper methods. The ETag of a pet store is its version number in quotes. parseETag returns
+   * the version from an If-Match header, or null when there is no header or it is "*". If-Match
+   * uses the strong comparison (RFC 9110), so a weak ETag (W/"...") never matches and the update is
+   * refused with 412. Only If-None-Match on GET compares weakly.
+   */
+
+  private static String toETag(long version) {
+    return "\"" + version + "\"";
+  }
+
+  private static Long parseETag(String eTag) {
+    if (Objects.isNull(eTag) || eTag.isBlank() || eTag.trim().equals("*")) {
+      return null;
+    }
+
+    String value = eTag.trim();
+
+    if (value.startsWith("W/")) {
+      throw new OptimisticLockingFailureException(
+          "If-Match " + eTag + " is a weak ETag, which never matches for an update");
+    }
+
+    try {
+      return Long.valueOf(value.replace("\"", ""));
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid ETag " + eTag);
+    }
+  }
+
 }
@@ -2,11 +2,16 @@ package pet.store.controller.error;
 
 import java.util.Map;
 import java.util.NoSuchElementException;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.ResponseStatus;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import lombok.extern.slf4j.Slf4j;
+import pet.store.service.CustomerQueueFullException;
 
 
 /*
@@ -33,4 +38,57 @@ public class GlobalErrorHandler {
 
   }
 
+  /*
+   * handleIllegalArgumentException method specifies a response status of 400 bad request. It is
+   * used when the request is well formed but asks for something that is not allowed, such as an
+   * employee that belongs to another pet store.
+   */
+  @ExceptionHandler(IllegalArgumentException.class)
+  @ResponseStatus(code = HttpStatus.BAD_REQUEST)
+  public Map<String, String> handleIllegalArgumentException(IllegalArgumentException ex) {
+    log.error("IllegalArgumentException", ex.toString());
+    return Map.of("message", ex.toString());
+
+  }
+
+  /*
+   * handleOptimisticLockingFailureException method specifies a response status of 412 precondition
+   * failed. It is used when the If-Match version of an update does not match the pet store, or the
+   * pet store was changed by another request while it was being updated.
+   */
+  @ExceptionHandler(OptimisticLockingFailureException.class)
+  @ResponseStatus(code = HttpStatus.PRECONDITION_FAILED)
+  public Map<String, String> handleOptimisticLockingFailureException(
+      OptimisticLockingFailureException ex) {
+    log.error("OptimisticLockingFailureException", ex.toString());
+    return Map.of("message", ex.toString());
+
+  }
+
+  /*
+   * handleCustomerQueueFullException method returns 429 too many requests when the customer
+   * registration queue is full, with a Retry-After header telling the client to try again in a
+   * second.
+   */
+  @ExceptionHandler(CustomerQueueFullException.class)
+  public ResponseEntity<Map<String, String>> handleCustomerQueueFullException(
+      CustomerQueueFullException ex) {
+    log.warn("CustomerQueueFullException", ex.toString());
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).header(HttpHeaders.RETRY_AFTER, "1")
+        .body(Map.of("message", ex.toString()));
+  }
+
+  /*
+   * handleTaskRejectedException method returns 503 service unavailable when a background job
+   * cannot be queued, for example a background pet store delete while the purge executor is full,
+   * with a Retry-After header telling the client to try again in 5 seconds.
+   */
+  @ExceptionHandler(TaskRejectedException.class)
+  public ResponseEntity<Map<String, String>> handleTaskRejectedException(
+      TaskRejectedException ex) {
+    log.warn("TaskRejectedException", ex.toString());
+    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+        .header(HttpHeaders.RETRY_AFTER, "5").body(Map.of("message", ex.toString()));
+  }
+
 }
@@ -0,0 +1,25 @@
+package pet.store.controller.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class KeysetPage is created. It holds one page of a cursor (keyset) paginated
+ * listing. nextCursor is the key of the last item on the page and is passed back as the "after"
+ * request parameter to read the next page. nextCursor is null when there are no more rows. For the
+ * pet store listing the key is the pet store ID (C is Long); the searches page on several columns
+ * and use an opaque string cursor (C is String).
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class KeysetPage<T, C> {
+
+  private List<T> items = new ArrayList<>();
+  private C nextCursor;
+
+}
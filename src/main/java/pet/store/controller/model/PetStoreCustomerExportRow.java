@@ -0,0 +1,24 @@
+package pet.store.controller.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class PetStoreCustomerExportRow is created. It is one row of the customer
+ * query of the NDJSON export: the customer columns and the ID of one pet store the customer shops
+ * at (null when there is none). A customer of several pet stores has one row per pet store.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetStoreCustomerExportRow {
+
+  private Long customerId;
+  private String customerFirstName;
+  private String customerLastName;
+  private String customerEmail;
+  private Long petStoreId;
+
+}
@@ -2,6 +2,7 @@ package pet.store.controller.model;
 
 import java.util.HashSet;
 import java.util.Set;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import pet.store.entity.Customer;
@@ -25,6 +26,10 @@ public class PetStoreData {
   private String petStoreState;
   private String petStoreZip;
   private String petStorePhone;
+
+  @JsonIgnore
+  private Long version; // Sent as the ETag header instead of in the body.
+
   private Set<PetStoreCustomer> customers = new HashSet<>(); // Data type of the customers field
                                                              // changed to PetStoreCustomer.
 
@@ -41,6 +46,7 @@ public class PetStoreData {
     petStoreState = petStore.getPetStoreState();
     petStoreZip = petStore.getPetStoreZip();
     petStorePhone = petStore.getPetStorePhone();
+    version = petStore.getVersion();
 
     /*
      * Using loops to set customers and employees fields to the respective PetStoreCustomer and
@@ -0,0 +1,30 @@
+package pet.store.controller.model;
+
+import java.time.Instant;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class PetStoreDeleteJob is created. It is the status of an asynchronous pet
+ * store delete started with DELETE /pet_store/{petStoreId}?async=true. The fields are updated by
+ * the background thread doing the delete, so the changing ones are volatile.
+ */
+
+@Data
+@NoArgsConstructor
+public class PetStoreDeleteJob {
+
+  public enum Status {
+    RUNNING, COMPLETED, FAILED
+  }
+
+  private String jobId;
+  private Long petStoreId;
+  private Instant startedAt;
+
+  private volatile Status status;
+  private volatile long rowsDeleted;
+  private volatile Instant finishedAt;
+  private volatile String message;
+
+}
@@ -1,16 +1,19 @@
 package pet.store.controller.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import pet.store.entity.Employee;
 
 /*
  * In this section DTO class PetStoreEmployee is created. Copied the fields from the Employee entity
- * class and added @Data and @NoArgsConstructor from the lombok package.
+ * class and added @Data and @NoArgsConstructor from the lombok package. The all-args constructor
+ * is used by the search queries to select rows straight into the DTO.
  */
 
 @Data
 @NoArgsConstructor
+@AllArgsConstructor
 public class PetStoreEmployee {
 
   private Long employeeId;
@@ -0,0 +1,25 @@
+package pet.store.controller.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class PetStoreEmployeeExportRow is created. It is one row of the employee
+ * query of the NDJSON export: the employee columns and the pet_store_id foreign key, selected
+ * straight into the DTO so no Employee or PetStore entity is loaded.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetStoreEmployeeExportRow {
+
+  private Long petStoreId;
+  private Long employeeId;
+  private String employeeFirstName;
+  private String employeeLastName;
+  private String employeePhone;
+  private String employeeJobTitle;
+
+}
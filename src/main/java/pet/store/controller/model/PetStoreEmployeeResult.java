@@ -0,0 +1,27 @@
+package pet.store.controller.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class PetStoreEmployeeResult is created. One result is returned for each
+ * employee sent to the bulk employee endpoint. index is the position of the employee in the
+ * request, employeeId is the ID of the saved row and message explains why an employee failed.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetStoreEmployeeResult {
+
+  public enum Status {
+    CREATED, UPDATED, FAILED
+  }
+
+  private int index;
+  private Long employeeId;
+  private Status status;
+  private String message;
+
+}
@@ -0,0 +1,31 @@
+package pet.store.controller.model;
+
+import java.util.Set;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class PetStoreExportLine is created. It is one line of the NDJSON export.
+ * type is "pet_store", "employee" or "customer" and the fields of the PetStoreSummary,
+ * PetStoreEmployee or PetStoreCustomer in data are written inline next to it. Employee lines carry
+ * the petStoreId of their pet store and customer lines carry the petStoreIds of every pet store the
+ * customer shops at.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class PetStoreExportLine {
+
+  private String type;
+  private Long petStoreId;
+  private Set<Long> petStoreIds;
+
+  @JsonUnwrapped
+  private Object data;
+
+}
@@ -0,0 +1,23 @@
+package pet.store.controller.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class PetStoreMultiGetResult is created. It holds the result of reading many
+ * pet stores by ID in one request: the pet stores that were found, in the order their IDs were
+ * requested, and the requested IDs that do not exist.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetStoreMultiGetResult {
+
+  private List<PetStoreData> petStores = new ArrayList<>();
+  private List<Long> missingIds = new ArrayList<>();
+
+}
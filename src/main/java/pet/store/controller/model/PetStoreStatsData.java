@@ -0,0 +1,32 @@
+package pet.store.controller.model;
+
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * In this section DTO class PetStoreStatsData is created. It holds the employee and customer
+ * counts of one pet store and the number of employees per job title.
+ */
+
+@Data
+@NoArgsConstructor
+public class PetStoreStatsData {
+
+  private Long petStoreId;
+  private String petStoreName;
+  private long employeeCount;
+  private long customerCount;
+  private Map<String, Long> jobTitles = new TreeMap<>();
+
+  // Constructor used by the stats query; the job titles are filled in afterwards.
+  public PetStoreStatsData(Long petStoreId, String petStoreName, Long employeeCount,
+      Long customerCount) {
+    this.petStoreId = petStoreId;
+    this.petStoreName = petStoreName;
+    this.employeeCount = employeeCount;
+    this.customerCount = customerCount;
+  }
+
+}
@@ -0,0 +1,44 @@
+package pet.store.controller.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import pet.store.entity.PetStore;
+
+/*
+ * In this section DTO class PetStoreSummary is created. It only has the scalar fields of the
+ * PetStore entity (no customers or employees). It is filled in directly by a projection query in
+ * PetStoreDao, so listing pet stores never loads the customer or employee collections.
+ */
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetStoreSummary {
+
+  private Long petStoreId;
+  private String petStoreName;
+  private String petStoreAddress;
+  private String petStoreCity;
+  private String petStoreState;
+  private String petStoreZip;
+  private String petStorePhone;
+
+  @JsonIgnore
+  private Long version; // Sent as the ETag header instead of in the body.
+
+  // Constructor: takes PetStore as a parameter. Only the scalar fields are copied, so the customers
+  // and employees of the pet store are not loaded.
+  public PetStoreSummary(PetStore petStore) {
+    petStoreId = petStore.getPetStoreId();
+    petStoreName = petStore.getPetStoreName();
+    petStoreAddress = petStore.getPetStoreAddress();
+    petStoreCity = petStore.getPetStoreCity();
+    petStoreState = petStore.getPetStoreState();
+    petStoreZip = petStore.getPetStoreZip();
+    petStorePhone = petStore.getPetStorePhone();
+    version = petStore.getVersion();
+  }
+
+}
@@ -0,0 +1,21 @@
+package pet.store.dao;
+
+import java.util.Set;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import pet.store.entity.BulkLoadChunk;
+
+/*
+ * Data Layer Interface BulkLoadChunkDao created. This interface extends JpaRepository. It holds the
+ * checkpoints of the bulk loader.
+ */
+
+public interface BulkLoadChunkDao extends JpaRepository<BulkLoadChunk, BulkLoadChunk.Key> {
+
+  // Returns the indexes of the chunks of a job that are already loaded in the given pass.
+  @Query("select c.chunkIndex from BulkLoadChunk c where c.jobId = :jobId and c.pass = :pass")
+  Set<Integer> findChunkIndexes(@Param("jobId") String jobId,
+      @Param("pass") BulkLoadChunk.Pass pass);
+
+}
@@ -0,0 +1,9 @@
+package pet.store.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import pet.store.entity.BulkLoadJob;
+
+// Data Layer Interface BulkLoadJobDao created. This interface extends JpaRepository.
+
+public interface BulkLoadJobDao extends JpaRepository<BulkLoadJob, String> {
+}
@@ -1,6 +1,17 @@
 package pet.store.dao;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import pet.store.controller.model.PetStoreCustomer;
+import pet.store.controller.model.PetStoreCustomerExportRow;
 import pet.store.entity.Customer;
 
 /*
@@ -11,4 +22,86 @@ import pet.store.entity.Customer;
 
 public interface CustomerDao extends JpaRepository<Customer, Long> {
 
+  /*
+   * Counts the pet_store_customer rows that link the customer to the pet store (0 or 1). The lookup
+   * uses the primary key of the join table, so neither the customer's pet stores nor the pet
+   * store's customers are loaded.
+   */
+  @Query(value = "SELECT COUNT(*) FROM pet_store_customer"
+      + " WHERE pet_store_id = :petStoreId AND customer_id = :customerId", nativeQuery = true)
+  long countPetStoreMembership(@Param("customerId") Long customerId,
+      @Param("petStoreId") Long petStoreId);
+
+  default boolean isCustomerOfPetStore(Long customerId, Long petStoreId) {
+    return countPetStoreMembership(customerId, petStoreId) > 0;
+  }
+
+  /*
+   * Streams every customer in ID order from a database cursor for the NDJSON export, with one flat
+   * row per pet store the customer shops at (one row with a null pet store ID when there is none).
+   * The rows of one customer are next to each other because of the order by, so the caller puts
+   * them back together. No entity is loaded, only the customer and join table columns.
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("select new pet.store.controller.model.PetStoreCustomerExportRow(c.customerId,"
+      + " c.customerFirstName, c.customerLastName, c.customerEmail, p.petStoreId)"
+      + " from Customer c left join c.petStore p order by c.customerId, p.petStoreId")
+  Stream<PetStoreCustomerExportRow> streamAll();
+
+  /*
+   * Keyset search queries for customers, selected straight into PetStoreCustomer. The leading
+   * condition is always applied, so the query can use idx_customer_email or idx_customer_name, and
+   * the rows are ordered like that index (InnoDB adds the primary key to every index), so the
+   * database reads the index in order and stops after one page instead of sorting every match.
+   * 
+   * searchByEmail matches one email, so the rows are in customer ID order and the page starts after
+   * afterId. searchByName orders by last name, first name and customer ID and the page starts after
+   * the (afterLastName, afterFirstName, afterId) key of the previous page; afterLastName is null
+   * for the first page. A null first name sorts before every other first name, as both MySQL and
+   * H2 sort nulls first. The name parameters are LIKE prefixes (ending in %) with ! as the escape
+   * character. When petStoreId is passed in only the customers of that pet store are returned.
+   * Pageable is only used for the page size.
+   */
+  @Query("select new pet.store.controller.model.PetStoreCustomer(c.customerId,"
+      + " c.customerFirstName, c.customerLastName, c.customerEmail)"
+      + " from Customer c where c.customerEmail = :email and c.customerId > :afterId"
+      + " and (:petStoreId is null or exists (select 1 from PetStore p join p.customers pc"
+      + " where p.petStoreId = :petStoreId and pc.customerId = c.customerId))"
+      + " order by c.customerId")
+  List<PetStoreCustomer> searchByEmail(@Param("email") String email,
+      @Param("petStoreId") Long petStoreId, @Param("afterId") Long afterId, Pageable pageable);
+
+  @Query("select new pet.store.controller.model.PetStoreCustomer(c.customerId,"
+      + " c.customerFirstName, c.customerLastName, c.customerEmail)"
+      + " from Customer c where c.customerLastName like :lastName escape '!'"
+      + " and (:firstName is null or c.customerFirstName like :firstName escape '!')"
+      + " and (:afterLastName is null or c.customerLastName > :afterLastName"
+      + " or (c.customerLastName = :afterLastName and (c.customerFirstName > :afterFirstName"
+      + " or (:afterFirstName is null and c.customerFirstName is not null)"
+      + " or ((c.customerFirstName = :afterFirstName"
+      + " or (:afterFirstName is null and c.customerFirstName is null))"
+      + " and c.customerId > :afterId))))"
+      + " and (:petStoreId is null or exists (select 1 from PetStore p join p.customers pc"
+      + " where p.petStoreId = :petStoreId and pc.customerId = c.customerId))"
+      + " order by c.customerLastName, c.customerFirstName, c.customerId")
+  List<PetStoreCustomer> searchByName(@Param("lastName") String lastName,
+      @Param("firstName") String firstName, @Param("petStoreId") Long petStoreId,
+      @Param("afterLastName") String afterLastName,
+      @Param("afterFirstName") String afterFirstName, @Param("afterId") Long afterId,
+      Pageable pageable);
+
+  /*
+   * Queries used by the bulk loader. findMaxCustomerId returns the highest customer ID, or 0 when
+   * there are none. findIdsByEmails returns (email, lowest customer ID) rows for the customers with
+   * one of the given emails and an ID of at most maxCustomerId, using the email index.
+   */
+  @Query("select coalesce(max(c.customerId), 0) from Customer c")
+  long findMaxCustomerId();
+
+  @Query("select c.customerEmail, min(c.customerId) from Customer c"
+      + " where c.customerEmail in :emails and c.customerId <= :maxCustomerId"
+      + " group by c.customerEmail")
+  List<Object[]> findIdsByEmails(@Param("emails") Collection<String> emails,
+      @Param("maxCustomerId") long maxCustomerId);
+
 }
@@ -1,6 +1,17 @@
 package pet.store.dao;
 
+import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import pet.store.controller.model.PetStoreEmployee;
+import pet.store.controller.model.PetStoreEmployeeExportRow;
 import pet.store.entity.Employee;
 
 /*
@@ -11,4 +22,80 @@ import pet.store.entity.Employee;
 
 public interface EmployeeDao extends JpaRepository<Employee, Long> {
 
+  /*
+   * Streams every employee in ID order from a database cursor for the NDJSON export. The pet store
+   * ID is read from the pet_store_id column of the employee row, so the pet store is neither joined
+   * nor loaded, and the rows are selected straight into PetStoreEmployeeExportRow.
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("select new pet.store.controller.model.PetStoreEmployeeExportRow(e.petStore.petStoreId,"
+      + " e.employeeId, e.employeeFirstName, e.employeeLastName, e.employeePhone,"
+      + " e.employeeJobTitle)"
+      + " from Employee e order by e.employeeId")
+  Stream<PetStoreEmployeeExportRow> streamAll();
+
+  /*
+   * Deletes up to limit employees of the pet store with one set-based statement and returns the
+   * number of rows deleted. Used to purge a large pet store in bounded chunks. Only the cached
+   * employees and employee collections are dropped from the second-level cache.
+   */
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "employee"))
+  @Query(value = "DELETE FROM employee WHERE pet_store_id = :petStoreId LIMIT :limit",
+      nativeQuery = true)
+  int deleteChunkByPetStoreId(@Param("petStoreId") Long petStoreId, @Param("limit") int limit);
+
+  /*
+   * Keyset search queries for employees, in the same form as the customer search queries. The
+   * prefix on last name or job title is always applied so idx_employee_name or
+   * idx_employee_job_title can be used, or idx_employee_store_name or idx_employee_store_job_title
+   * when petStoreId is passed in. searchByName orders by last name, first name and employee ID and
+   * searchByJobTitle by job title and employee ID, the order of those indexes, and each page starts
+   * after the key of the last row of the previous page (afterLastName or afterJobTitle is null for
+   * the first page).
+   */
+  @Query("select new pet.store.controller.model.PetStoreEmployee(e.employeeId,"
+      + " e.employeeFirstName, e.employeeLastName, e.employeePhone, e.employeeJobTitle)"
+      + " from Employee e where e.employeeLastName like :lastName escape '!'"
+      + " and (:firstName is null or e.employeeFirstName like :firstName escape '!')"
+      + " and (:jobTitle is null or e.employeeJobTitle like :jobTitle escape '!')"
+      + " and (:petStoreId is null or e.petStore.petStoreId = :petStoreId)"
+      + " and (:afterLastName is null or e.employeeLastName > :afterLastName"
+      + " or (e.employeeLastName = :afterLastName and (e.employeeFirstName > :afterFirstName"
+      + " or (:afterFirstName is null and e.employeeFirstName is not null)"
+      + " or ((e.employeeFirstName = :afterFirstName"
+      + " or (:afterFirstName is null and e.employeeFirstName is null))"
+      + " and e.employeeId > :afterId))))"
+      + " order by e.employeeLastName, e.employeeFirstName, e.employeeId")
+  List<PetStoreEmployee> searchByName(@Param("lastName") String lastName,
+      @Param("firstName") String firstName, @Param("jobTitle") String jobTitle,
+      @Param("petStoreId") Long petStoreId, @Param("afterLastName") String afterLastName,
+      @Param("afterFirstName") String afterFirstName, @Param("afterId") Long afterId,
+      Pageable pageable);
+
+  @Query("select new pet.store.controller.model.PetStoreEmployee(e.employeeId,"
+      + " e.employeeFirstName, e.employeeLastName, e.employeePhone, e.employeeJobTitle)"
+      + " from Employee e where e.employeeJobTitle like :jobTitle escape '!'"
+      + " and (:petStoreId is null or e.petStore.petStoreId = :petStoreId)"
+      + " and (:afterJobTitle is null or e.employeeJobTitle > :afterJobTitle"
+      + " or (e.employeeJobTitle = :afterJobTitle and e.employeeId > :afterId))"
+      + " order by e.employeeJobTitle, e.employeeId")
+  List<PetStoreEmployee> searchByJobTitle(@Param("jobTitle") String jobTitle,
+      @Param("petStoreId") Long petStoreId, @Param("afterJobTitle") String afterJobTitle,
+      @Param("afterId") Long afterId, Pageable pageable);
+
+  /*
+   * Statements on the employee_seq table used by the bulk loader to reserve a block of employee
+   * IDs. lockEmployeeSequence reads the next value with SELECT ... FOR UPDATE, so Hibernate cannot
+   * take IDs from the table until the transaction ends, and updateEmployeeSequence moves it past
+   * the block. MySQL only: on other databases employee_seq is a real sequence.
+   */
+  @Query(value = "SELECT next_val FROM employee_seq FOR UPDATE", nativeQuery = true)
+  long lockEmployeeSequence();
+
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "employee_seq"))
+  @Query(value = "UPDATE employee_seq SET next_val = :nextVal", nativeQuery = true)
+  int updateEmployeeSequence(@Param("nextVal") long nextVal);
+
 }
@@ -1,10 +1,169 @@
 package pet.store.dao;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import pet.store.controller.model.PetStoreSummary;
 import pet.store.entity.PetStore;
 
 // Data Layer Interface PetStoreDao created. This interface extends JpaRepository.
 
 public interface PetStoreDao extends JpaRepository<PetStore, Long> {
 
+  /*
+   * Keyset query for the paginated pet store listing. Returns summaries of the pet stores with an
+   * ID greater than afterId in ID order. The city, state and zip filters are only applied when a
+   * value is passed in. Pageable is only used for the page size, so the query never uses an OFFSET.
+   * 
+   * Only the scalar pet store columns are selected into PetStoreSummary, so one SQL statement is
+   * run per page and the customer and employee tables are never touched.
+   * 
+   * The pages are kept in the query cache (pet-store-summaries region). Hibernate drops the cached
+   * pages when the pet_store table changes.
+   */
+  @QueryHints({@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+      @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = "pet-store-summaries")})
+  @Query("select new pet.store.controller.model.PetStoreSummary(p.petStoreId, p.petStoreName,"
+      + " p.petStoreAddress, p.petStoreCity, p.petStoreState, p.petStoreZip, p.petStorePhone,"
+      + " p.version)"
+      + " from PetStore p where p.petStoreId > :afterId"
+      + " and (:city is null or p.petStoreCity = :city)"
+      + " and (:state is null or p.petStoreState = :state)"
+      + " and (:zip is null or p.petStoreZip = :zip)"
+      + " order by p.petStoreId")
+  List<PetStoreSummary> findSummaryPageAfter(@Param("afterId") Long afterId,
+      @Param("city") String city, @Param("state") String state, @Param("zip") String zip,
+      Pageable pageable);
+
+  /*
+   * Entity graph queries used to read a pet store with its collections. Each one loads the pet
+   * store and one collection with a single join. They are kept separate so the customers and
+   * employees are never joined together, which would return customers x employees rows.
+   */
+  @EntityGraph(attributePaths = "customers")
+  Optional<PetStore> findWithCustomersByPetStoreId(Long petStoreId);
+
+  @EntityGraph(attributePaths = "employees")
+  Optional<PetStore> findWithEmployeesByPetStoreId(Long petStoreId);
+
+  /*
+   * findFullPetStoreById method returns the pet store with both the customers and the employees
+   * loaded, using exactly two SQL statements no matter how large the collections are. The second
+   * query returns the same managed PetStore and fills in its employees collection, so it must run
+   * inside the same transaction as the first.
+   */
+  default Optional<PetStore> findFullPetStoreById(Long petStoreId) {
+    Optional<PetStore> petStore = findWithCustomersByPetStoreId(petStoreId);
+
+    if (petStore.isPresent()) {
+      findWithEmployeesByPetStoreId(petStoreId);
+    }
+    return petStore;
+  }
+
+  /*
+   * The same two queries for many pet stores at once, used by the multi-get. The pet stores are
+   * read with their customers by an IN list, then the employees of the same pet stores are loaded
+   * into them, so any number of pet stores costs two SQL statements.
+   */
+  @EntityGraph(attributePaths = "customers")
+  List<PetStore> findWithCustomersByPetStoreIdIn(Collection<Long> petStoreIds);
+
+  @EntityGraph(attributePaths = "employees")
+  List<PetStore> findWithEmployeesByPetStoreIdIn(Collection<Long> petStoreIds);
+
+  default List<PetStore> findFullPetStoresByIds(Collection<Long> petStoreIds) {
+    List<PetStore> petStores = findWithCustomersByPetStoreIdIn(petStoreIds);
+
+    if (!petStores.isEmpty()) {
+      findWithEmployeesByPetStoreIdIn(petStoreIds);
+    }
+    return petStores;
+  }
+
+  /*
+   * Returns the IDs of the pet stores a customer shops at, without loading either side of the
+   * customer/pet store relationship.
+   */
+  @Query("select p.petStoreId from PetStore p join p.customers c where c.customerId = :customerId")
+  List<Long> findPetStoreIdsByCustomerId(@Param("customerId") Long customerId);
+
+  /*
+   * Direct link and unlink operations on the pet_store_customer join table. Each one is a single
+   * statement, so adding or removing a customer never loads the customers of the pet store or the
+   * pet stores of the customer. They return the number of rows changed.
+   * 
+   * The native spaces hint tells Hibernate that only pet_store_customer changes, so only the
+   * cached customer collections are dropped instead of the whole second-level cache.
+   */
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "pet_store_customer"))
+  @Query(value = "INSERT INTO pet_store_customer (pet_store_id, customer_id)"
+      + " VALUES (:petStoreId, :customerId)", nativeQuery = true)
+  int linkCustomer(@Param("petStoreId") Long petStoreId, @Param("customerId") Long customerId);
+
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "pet_store_customer"))
+  @Query(value = "DELETE FROM pet_store_customer"
+      + " WHERE pet_store_id = :petStoreId AND customer_id = :customerId", nativeQuery = true)
+  int unlinkCustomer(@Param("petStoreId") Long petStoreId, @Param("customerId") Long customerId);
+
+  /*
+   * Streams every pet store in ID order from a database cursor for the NDJSON export. The fetch
+   * size hint keeps the JDBC driver from reading the whole result set into memory, and the rows are
+   * selected straight into PetStoreSummary, so no entity is added to the persistence context. The
+   * stream must be read and closed inside a transaction.
+   */
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+  @Query("select new pet.store.controller.model.PetStoreSummary(p.petStoreId, p.petStoreName,"
+      + " p.petStoreAddress, p.petStoreCity, p.petStoreState, p.petStoreZip, p.petStorePhone,"
+      + " p.version)"
+      + " from PetStore p order by p.petStoreId")
+  Stream<PetStoreSummary> streamAll();
+
+  // Returns only the version column of the pet store, used to answer conditional GET requests.
+  @Query("select p.version from PetStore p where p.petStoreId = :petStoreId")
+  Optional<Long> findVersionByPetStoreId(@Param("petStoreId") Long petStoreId);
+
+  // Returns (pet store ID, version) rows of the given pet stores, used to check cached copies.
+  @Query("select p.petStoreId, p.version from PetStore p where p.petStoreId in :petStoreIds")
+  List<Object[]> findVersionsByPetStoreIds(@Param("petStoreIds") Collection<Long> petStoreIds);
+
+  /*
+   * Set-based statements used to purge a large pet store. unlinkCustomerChunk removes up to limit
+   * pet_store_customer rows of the pet store; the customers themselves are kept.
+   * findAndLockByPetStoreId reads the pet store with SELECT ... FOR UPDATE so no employee or
+   * customer can be added while the last rows are removed, and deleteInBulkByPetStoreId deletes
+   * the pet store row without loading it.
+   */
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "pet_store_customer"))
+  @Query(value = "DELETE FROM pet_store_customer WHERE pet_store_id = :petStoreId LIMIT :limit",
+      nativeQuery = true)
+  int unlinkCustomerChunk(@Param("petStoreId") Long petStoreId, @Param("limit") int limit);
+
+  @Lock(LockModeType.PESSIMISTIC_WRITE)
+  @Query("select p from PetStore p where p.petStoreId = :petStoreId")
+  Optional<PetStore> findAndLockByPetStoreId(@Param("petStoreId") Long petStoreId);
+
+  @Modifying
+  @Query("delete from PetStore p where p.petStoreId = :petStoreId")
+  int deleteInBulkByPetStoreId(@Param("petStoreId") Long petStoreId);
+
+  // Returns the highest pet store ID, or 0 when there are none. Used by the bulk loader.
+  @Query("select coalesce(max(p.petStoreId), 0) from PetStore p")
+  long findMaxPetStoreId();
+
 }
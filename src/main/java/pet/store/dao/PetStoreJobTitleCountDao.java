@@ -0,0 +1,53 @@
+package pet.store.dao;
+
+import java.util.List;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import pet.store.entity.PetStoreJobTitleCount;
+
+/*
+ * Data Layer Interface PetStoreJobTitleCountDao created. This interface extends JpaRepository. It
+ * manages the job title counters of the pet stores.
+ */
+
+public interface PetStoreJobTitleCountDao
+    extends JpaRepository<PetStoreJobTitleCount, PetStoreJobTitleCount.Key> {
+
+  // Adds delta (which can be negative) to a job title counter, creating the row the first time.
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES,
+      value = "pet_store_job_title_count"))
+  @Query(value = "INSERT INTO pet_store_job_title_count (pet_store_id, job_title, employee_count)"
+      + " VALUES (:petStoreId, :jobTitle, :delta) ON DUPLICATE KEY UPDATE"
+      + " employee_count = employee_count + :delta", nativeQuery = true)
+  int addCount(@Param("petStoreId") Long petStoreId, @Param("jobTitle") String jobTitle,
+      @Param("delta") long delta);
+
+  @Modifying
+  @Query("delete from PetStoreJobTitleCount j where j.petStoreId = :petStoreId")
+  int deleteByPetStoreId(@Param("petStoreId") Long petStoreId);
+
+  @Query("select j from PetStoreJobTitleCount j where j.employeeCount > 0"
+      + " order by j.petStoreId, j.jobTitle")
+  List<PetStoreJobTitleCount> findAllNonZero();
+
+  /*
+   * GROUP BY query returning the actual (pet store ID, job title, count) rows, for all pet stores
+   * or, with countJobTitles, for one.
+   */
+  @Query("select e.petStore.petStoreId, e.employeeJobTitle, count(e) from Employee e"
+      + " where e.employeeJobTitle is not null"
+      + " group by e.petStore.petStoreId, e.employeeJobTitle")
+  List<Object[]> countJobTitlesByPetStore();
+
+  @Query("select e.employeeJobTitle, count(e) from Employee e"
+      + " where e.petStore.petStoreId = :petStoreId and e.employeeJobTitle is not null"
+      + " group by e.employeeJobTitle")
+  List<Object[]> countJobTitles(@Param("petStoreId") Long petStoreId);
+
+}
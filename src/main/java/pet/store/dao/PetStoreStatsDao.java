@@ -0,0 +1,67 @@
+package pet.store.dao;
+
+import java.util.List;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import jakarta.persistence.QueryHint;
+import pet.store.controller.model.PetStoreStatsData;
+import pet.store.entity.PetStoreStats;
+
+/*
+ * Data Layer Interface PetStoreStatsDao created. This interface extends JpaRepository. It manages
+ * the pet_store_stats counters and holds the GROUP BY queries used to reconcile them.
+ */
+
+public interface PetStoreStatsDao extends JpaRepository<PetStoreStats, Long> {
+
+  /*
+   * Adds to the employee and customer counters of a pet store (the deltas can be negative),
+   * creating the row the first time. One statement, so no read is needed before the write.
+   */
+  @Modifying
+  @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "pet_store_stats"))
+  @Query(value = "INSERT INTO pet_store_stats (pet_store_id, employee_count, customer_count)"
+      + " VALUES (:petStoreId, :employees, :customers) ON DUPLICATE KEY UPDATE"
+      + " employee_count = employee_count + :employees,"
+      + " customer_count = customer_count + :customers", nativeQuery = true)
+  int addCounts(@Param("petStoreId") Long petStoreId, @Param("employees") long employees,
+      @Param("customers") long customers);
+
+  @Modifying
+  @Query("delete from PetStoreStats s where s.petStoreId = :petStoreId")
+  int deleteByPetStoreId(@Param("petStoreId") Long petStoreId);
+
+  /*
+   * Returns the statistics of every pet store in ID order with one query over pet_store and
+   * pet_store_stats. A pet store without a stats row has zero employees and customers.
+   */
+  @Query("select new pet.store.controller.model.PetStoreStatsData(p.petStoreId, p.petStoreName,"
+      + " coalesce(s.employeeCount, 0L), coalesce(s.customerCount, 0L))"
+      + " from PetStore p left join PetStoreStats s on s.petStoreId = p.petStoreId"
+      + " order by p.petStoreId")
+  List<PetStoreStatsData> findAllStats();
+
+  /*
+   * GROUP BY queries returning the actual counts as (pet store ID, count) rows, used by the
+   * reconciliation job. Pet stores without employees or customers have no row.
+   */
+  @Query("select e.petStore.petStoreId, count(e) from Employee e group by e.petStore.petStoreId")
+  List<Object[]> countEmployeesByPetStore();
+
+  @Query(value = "SELECT pet_store_id, COUNT(*) FROM pet_store_customer GROUP BY pet_store_id",
+      nativeQuery = true)
+  List<Object[]> countCustomersByPetStore();
+
+  // The same counts for one pet store, used to repair its counters.
+  @Query("select count(e) from Employee e where e.petStore.petStoreId = :petStoreId")
+  long countEmployees(@Param("petStoreId") Long petStoreId);
+
+  @Query(value = "SELECT COUNT(*) FROM pet_store_customer WHERE pet_store_id = :petStoreId",
+      nativeQuery = true)
+  long countCustomers(@Param("petStoreId") Long petStoreId);
+
+}
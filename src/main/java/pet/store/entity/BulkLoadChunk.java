@@ -0,0 +1,63 @@
+package pet.store.entity;
+
+import java.io.Serializable;
+import java.time.Instant;
+import org.hibernate.annotations.JdbcTypeCode;
+import org.hibernate.type.SqlTypes;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * This section contains the bulk load checkpoint entity for the bulk_load_chunk table. A row is
+ * written in the same transaction as the rows loaded from one chunk of the file in one pass, so a
+ * chunk is either fully loaded and checkpointed or not loaded at all. A resumed job skips the
+ * chunks that have a row.
+ * 
+ * The pass is stored as plain text rather than a MySQL ENUM column, so new passes need no schema
+ * change.
+ */
+
+@Entity
+@Table(name = "bulk_load_chunk")
+@IdClass(BulkLoadChunk.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkLoadChunk {
+
+  // The passes of a bulk load, in the order they run.
+  public enum Pass {
+    PET_STORES, EMPLOYEES, CUSTOMERS, MEMBERSHIPS
+  }
+
+  @Id
+  private String jobId;
+  @Id
+  @Enumerated(EnumType.STRING)
+  @JdbcTypeCode(SqlTypes.VARCHAR)
+  @Column(length = 20)
+  private Pass pass;
+  @Id
+  private int chunkIndex;
+  private long rowsWritten;
+  private Instant finishedAt;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private String jobId;
+    private Pass pass;
+    private int chunkIndex;
+  }
+}
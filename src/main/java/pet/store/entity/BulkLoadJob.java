@@ -0,0 +1,34 @@
+package pet.store.entity;
+
+import java.time.Instant;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * This section contains the bulk load job entity for the bulk_load_job table. There is one row per
+ * file loaded by the bulk loader, identified by the file name, size and modification time, so
+ * loading the same file again resumes the job instead of starting over.
+ * 
+ * The chunk size and the ID offsets are fixed when the job starts and reused on resume, so the
+ * chunks and the IDs given to the pet stores and customers come out the same every time.
+ */
+
+@Entity
+@Table(name = "bulk_load_job")
+@Data
+@NoArgsConstructor
+public class BulkLoadJob {
+  @Id
+  private String jobId;
+  private String fileName;
+  private long fileSize;
+  private long chunkSize;
+  private int chunkCount;
+  private long petStoreIdOffset;
+  private long customerIdOffset;
+  private Instant startedAt;
+  private Instant finishedAt;
+}
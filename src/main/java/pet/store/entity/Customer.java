@@ -2,12 +2,19 @@ package pet.store.entity;
 
 import java.util.HashSet;
 import java.util.Set;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.ManyToMany;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -15,17 +22,33 @@ import lombok.ToString;
 /*
  * This section contains the customer entity for the customer table.
  * JPA will create the table for us based on the relationship defined below.
+ * @DynamicUpdate makes the UPDATE statements list only the columns that changed.
+ * 
+ * The indexes back the customer search: exact lookup by email and prefix lookup by last name
+ * (then first name). The column names are given so the index column lists match the table.
+ * 
+ * Customers are kept in the second-level cache.
  */
 
 @Entity
 @Data
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = {@Index(name = "idx_customer_email", columnList = "customer_email"),
+    @Index(name = "idx_customer_name", columnList = "customer_last_name, customer_first_name")})
 public class Customer {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long customerId;
   
+  @Column(name = "customer_first_name")
   private String customerFirstName;
+
+  @Column(name = "customer_last_name")
   private String customerLastName;
+
+  @Column(name = "customer_email")
   private String customerEmail;
   
   @EqualsAndHashCode.Exclude
@@ -1,12 +1,20 @@
 package pet.store.entity;
 
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
+import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
+import jakarta.persistence.SequenceGenerator;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -15,18 +23,46 @@ import lombok.ToString;
 /*
  * This section contains the employee entity for the employee table. 
  * JPA will create the table for us based on the relationship defined below.
+ * @DynamicUpdate makes the UPDATE statements list only the columns that changed.
+ * 
+ * Employee IDs come from the employee_seq sequence (a table on MySQL) with a pooled allocation of
+ * 50 IDs per round trip. With IDENTITY IDs Hibernate has to run each insert on its own to read the
+ * generated key, so it could not batch the inserts of the bulk employee endpoint.
+ * 
+ * The indexes back the employee search: prefix lookup by last name (then first name) and by job
+ * title, across all pet stores or within one pet store. The store scoped indexes start with
+ * pet_store_id and also serve as the index of the foreign key.
+ * 
+ * Employees are kept in the second-level cache.
  */
 
 @Entity
 @Data
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(indexes = {
+    @Index(name = "idx_employee_name", columnList = "employee_last_name, employee_first_name"),
+    @Index(name = "idx_employee_job_title", columnList = "employee_job_title"),
+    @Index(name = "idx_employee_store_name",
+        columnList = "pet_store_id, employee_last_name, employee_first_name"),
+    @Index(name = "idx_employee_store_job_title",
+        columnList = "pet_store_id, employee_job_title")})
 public class Employee {
   @Id
-  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "employee_seq")
+  @SequenceGenerator(name = "employee_seq", sequenceName = "employee_seq", allocationSize = 50)
   private Long employeeId;
   
+  @Column(name = "employee_first_name")
   private String employeeFirstName;
+
+  @Column(name = "employee_last_name")
   private String employeeLastName;
+
   private String employeePhone;
+
+  @Column(name = "employee_job_title")
   private String employeeJobTitle;
   
   @EqualsAndHashCode.Exclude
@@ -2,6 +2,7 @@ package pet.store.entity;
 
 import java.util.HashSet;
 import java.util.Set;
+import jakarta.persistence.Cacheable;
 import jakarta.persistence.CascadeType;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
@@ -11,6 +12,10 @@ import jakarta.persistence.JoinColumn;
 import jakarta.persistence.JoinTable;
 import jakarta.persistence.ManyToMany;
 import jakarta.persistence.OneToMany;
+import jakarta.persistence.Version;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.ToString;
@@ -19,10 +24,21 @@ import lombok.ToString;
 /*
  * This section contains the pet store entity for the pet_store table.
  * JPA will create the table for us based on the relationship defined below.
+ * @DynamicUpdate makes the UPDATE statements list only the columns that changed.
+ * 
+ * version is the optimistic locking version. Hibernate bumps it when the pet store fields change
+ * and the service bumps it when the employees or customers change. It is served as the ETag of the
+ * pet store.
+ * 
+ * The pet store and its customers and employees collections are kept in the second-level cache
+ * (READ_WRITE, so a cached entry is locked while a transaction changes it).
  */
 
 @Entity
 @Data
+@DynamicUpdate
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class PetStore {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -33,9 +49,14 @@ public class PetStore {
   private String petStoreState;
   private String petStoreZip;
   private String petStorePhone;
+
+  @EqualsAndHashCode.Exclude
+  @Version
+  private long version;
   
   @EqualsAndHashCode.Exclude
   @ToString.Exclude
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
   @ManyToMany(cascade = CascadeType.PERSIST)
   @JoinTable(name = "pet_store_customer",
               joinColumns = @JoinColumn(name = "pet_store_id"), 
@@ -44,6 +65,7 @@ public class PetStore {
   
   @EqualsAndHashCode.Exclude
   @ToString.Exclude
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
   @OneToMany(mappedBy = "petStore", cascade = CascadeType.ALL, orphanRemoval = true)
   private Set<Employee> employees = new HashSet<>();
 
@@ -0,0 +1,42 @@
+package pet.store.entity;
+
+import java.io.Serializable;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * This section contains the job title count entity for the pet_store_job_title_count table. There
+ * is one row per pet store and job title with the number of employees that have the job title.
+ * Employees without a job title are not counted.
+ */
+
+@Entity
+@Table(name = "pet_store_job_title_count")
+@IdClass(PetStoreJobTitleCount.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetStoreJobTitleCount {
+  @Id
+  private Long petStoreId;
+
+  @Id
+  private String jobTitle;
+
+  private long employeeCount;
+
+  @Data
+  @NoArgsConstructor
+  @AllArgsConstructor
+  public static class Key implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long petStoreId;
+    private String jobTitle;
+  }
+}
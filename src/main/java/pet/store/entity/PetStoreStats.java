@@ -0,0 +1,28 @@
+package pet.store.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/*
+ * This section contains the pet store statistics entity for the pet_store_stats table. It holds
+ * the number of employees and customers of one pet store. The counters are changed in the same
+ * transaction as the employees and customers, by PetStoreStatsService, so reading them never
+ * scans the employee or pet_store_customer tables.
+ */
+
+@Entity
+@Table(name = "pet_store_stats")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PetStoreStats {
+  @Id
+  private Long petStoreId;
+
+  private long employeeCount;
+  private long customerCount;
+}
@@ -0,0 +1,15 @@
+package pet.store.service;
+
+/*
+ * Thrown when the customer registration queue cannot take another registration. It is mapped to
+ * 429 too many requests with a Retry-After header.
+ */
+public class CustomerQueueFullException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public CustomerQueueFullException(String message) {
+    super(message);
+  }
+
+}
@@ -0,0 +1,284 @@
+package pet.store.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import pet.store.controller.model.PetStoreCustomer;
+import pet.store.dao.PetStoreDao;
+
+/*
+ * Write-behind queue for new customer registrations (pet-store.customer-queue.* in
+ * application.yaml). Only created when pet-store.customer-queue.enabled is true.
+ * 
+ * submit() puts the registration on a bounded in-memory queue and returns straight away. When the
+ * queue is full CustomerQueueFullException is thrown, which the client gets as a 429. A single
+ * writer thread takes the registrations off the queue and saves them with
+ * PetStoreService.saveNewCustomers(), one transaction per batch. A batch is written when it has
+ * batch-size registrations or flush-interval after its first registration, whichever comes first.
+ * A batch that fails is retried a few times. If it still fails, its registrations are written one
+ * at a time, so one bad registration cannot take the rest of the batch down with it. A registration
+ * that cannot be written on its own either, or whose pet store was deleted after it was accepted,
+ * is appended to the dead-letter file (pet-store.customer-queue.dead-letter-file), one JSON line
+ * with the pet store ID, the customer, the time and the error, from where it can be sent again.
+ * Dead letters are counted in pet.store.customer.queue.dead.letters, tagged with the reason. Only
+ * when that file cannot be written either is the registration logged as lost.
+ * 
+ * On shutdown the queue stops after the web server (its lifecycle phase is lower), so no request
+ * can add to it any more. stop() then waits until the writer has written every accepted
+ * registration; once stopped the writer no longer waits for a batch to fill up.
+ */
+@Service
+@ConditionalOnProperty(prefix = "pet-store.customer-queue", name = "enabled",
+    havingValue = "true")
+@Slf4j
+public class CustomerRegistrationQueue implements SmartLifecycle {
+
+  private static final int MAX_ATTEMPTS = 3;
+  private static final long RETRY_DELAY_MILLIS = 1000;
+
+  private record Registration(Long petStoreId, PetStoreCustomer customer) {
+  }
+
+  private final PetStoreService petStoreService;
+  private final PetStoreDao petStoreDao;
+  private final BlockingQueue<Registration> queue;
+  private final int batchSize;
+  private final long flushIntervalNanos;
+  private final Counter rejected;
+  private final MeterRegistry meterRegistry;
+  private final ObjectMapper objectMapper;
+  private final Path deadLetterFile;
+
+  private volatile boolean running;
+  private Thread writer;
+
+  public CustomerRegistrationQueue(PetStoreService petStoreService, PetStoreDao petStoreDao,
+      MeterRegistry meterRegistry, ObjectMapper objectMapper,
+      @Value("${pet-store.customer-queue.capacity:10000}") int capacity,
+      @Value("${pet-store.customer-queue.batch-size:500}") int batchSize,
+      @Value("${pet-store.customer-queue.flush-interval:100ms}") Duration flushInterval,
+      @Value("${pet-store.customer-queue.dead-letter-file:customer-queue-dead-letters.ndjson}")
+      Path deadLetterFile) {
+    this.petStoreService = petStoreService;
+    this.petStoreDao = petStoreDao;
+    this.meterRegistry = meterRegistry;
+    this.objectMapper = objectMapper;
+    this.deadLetterFile = deadLetterFile;
+    this.queue = new ArrayBlockingQueue<>(capacity);
+    this.batchSize = batchSize;
+    this.flushIntervalNanos = flushInterval.toNanos();
+
+    Gauge.builder("pet.store.customer.queue.size", queue, BlockingQueue::size)
+        .register(meterRegistry);
+    this.rejected = meterRegistry.counter("pet.store.customer.queue.rejected");
+  }
+
+  /*
+   * submit method takes petStoreId and a new PetStoreCustomer and queues the registration. If the
+   * pet store does not exist NoSuchElementException is thrown; the lookup is normally answered by
+   * the second-level cache.
+   */
+  public void submit(Long petStoreId, PetStoreCustomer petStoreCustomer) {
+    if (petStoreDao.findById(petStoreId).isEmpty()) {
+      throw new NoSuchElementException("Pet Store with ID = " + petStoreId + " does not exist");
+    }
+
+    if (!running || !queue.offer(new Registration(petStoreId, petStoreCustomer))) {
+      rejected.increment();
+      throw new CustomerQueueFullException("Customer registration queue is full");
+    }
+  }
+
+  @Override
+  public void start() {
+    running = true;
+    writer = new Thread(this::writeBatches, "customer-queue-writer");
+    writer.start();
+  }
+
+  @Override
+  public void stop() {
+    running = false;
+
+    try {
+      writer.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    log.info("Customer registration queue stopped");
+  }
+
+  @Override
+  public boolean isRunning() {
+    return running;
+  }
+
+  // Stops after the web server (which stops at DEFAULT_PHASE - 1024 and DEFAULT_PHASE - 2048).
+  @Override
+  public int getPhase() {
+    return SmartLifecycle.DEFAULT_PHASE - 4096;
+  }
+
+  /*
+   * writeBatches method runs on the writer thread. It keeps writing batches while the queue is
+   * running and, once it is stopped, until the queue is empty.
+   */
+  private void writeBatches() {
+    List<Registration> batch = new ArrayList<>(batchSize);
+
+    while (running || !queue.isEmpty()) {
+      try {
+        fillBatch(batch);
+      } catch (InterruptedException e) {
+        log.warn("Customer registration queue writer interrupted; draining the queue");
+        running = false;
+      }
+
+      if (!batch.isEmpty()) {
+        writeBatch(batch);
+        batch.clear();
+      }
+    }
+  }
+
+  private void fillBatch(List<Registration> batch) throws InterruptedException {
+    if (!running) {
+      queue.drainTo(batch, batchSize);
+      return;
+    }
+
+    Registration first = queue.poll(flushIntervalNanos, TimeUnit.NANOSECONDS);
+
+    if (first == null) {
+      return;
+    }
+
+    batch.add(first);
+    long deadline = System.nanoTime() + flushIntervalNanos;
+
+    while (batch.size() < batchSize) {
+      queue.drainTo(batch, batchSize - batch.size());
+      long wait = deadline - System.nanoTime();
+
+      if (batch.size() >= batchSize || wait <= 0) {
+        return;
+      }
+
+      Registration next = queue.poll(wait, TimeUnit.NANOSECONDS);
+
+      if (next == null) {
+        return;
+      }
+      batch.add(next);
+    }
+  }
+
+  private void writeBatch(List<Registration> batch) {
+    Map<Long, List<PetStoreCustomer>> customersByPetStore = new LinkedHashMap<>();
+
+    for (Registration registration : batch) {
+      customersByPetStore.computeIfAbsent(registration.petStoreId(), id -> new ArrayList<>())
+          .add(registration.customer());
+    }
+
+    for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+      try {
+        List<Long> missingPetStoreIds = petStoreService.saveNewCustomers(customersByPetStore);
+        log.debug("Wrote a batch of {} queued customers", batch.size());
+        deadLetterMissing(batch, missingPetStoreIds);
+        return;
+      } catch (RuntimeException e) {
+        log.warn("Writing {} queued customers failed (attempt {} of {})", batch.size(), attempt,
+            MAX_ATTEMPTS, e);
+
+        if (attempt < MAX_ATTEMPTS) {
+          sleepBeforeRetry();
+        }
+      }
+    }
+
+    log.warn("Writing the {} queued customers of the failed batch one at a time", batch.size());
+    batch.forEach(this::writeOne);
+  }
+
+  /*
+   * writeOne method writes a single registration in its own transaction. A registration that
+   * fails is written to the dead-letter file.
+   */
+  private void writeOne(Registration registration) {
+    try {
+      deadLetterMissing(List.of(registration), petStoreService.saveNewCustomers(
+          Map.of(registration.petStoreId(), List.of(registration.customer()))));
+    } catch (RuntimeException e) {
+      log.warn("Writing queued customer {} of pet store ID={} failed", registration.customer(),
+          registration.petStoreId(), e);
+      writeDeadLetter(registration, "write-failed", e.toString());
+    }
+  }
+
+  /*
+   * deadLetterMissing method dead-letters the registrations of the batch whose pet store was
+   * deleted between submit() and the write.
+   */
+  private void deadLetterMissing(List<Registration> batch, List<Long> missingPetStoreIds) {
+    for (Registration registration : batch) {
+      if (missingPetStoreIds.contains(registration.petStoreId())) {
+        log.warn("Queued customer {} not written: pet store with ID={} does not exist",
+            registration.customer(), registration.petStoreId());
+        writeDeadLetter(registration, "pet-store-missing",
+            "Pet store with ID=" + registration.petStoreId() + " does not exist");
+      }
+    }
+  }
+
+  private void writeDeadLetter(Registration registration, String reason, String error) {
+    Map<String, Object> line = new LinkedHashMap<>();
+    line.put("petStoreId", registration.petStoreId());
+    line.put("customer", registration.customer());
+    line.put("failedAt", Instant.now().toString());
+    line.put("reason", reason);
+    line.put("error", error);
+
+    try {
+      Files.write(deadLetterFile,
+          (objectMapper.writeValueAsString(line) + System.lineSeparator())
+              .getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+      meterRegistry.counter("pet.store.customer.queue.dead.letters", "reason", reason)
+          .increment();
+    } catch (IOException e) {
+      log.error("Lost queued customer {} of pet store ID={}: dead-letter file {} not written",
+          registration.customer(), registration.petStoreId(), deadLetterFile, e);
+    }
+  }
+
+  private void sleepBeforeRetry() {
+    try {
+      Thread.sleep(RETRY_DELAY_MILLIS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+}
@@ -0,0 +1,142 @@
+package pet.store.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import pet.store.controller.model.PetStoreCustomer;
+import pet.store.controller.model.PetStoreCustomerExportRow;
+import pet.store.controller.model.PetStoreEmployee;
+import pet.store.controller.model.PetStoreEmployeeExportRow;
+import pet.store.controller.model.PetStoreExportLine;
+import pet.store.controller.model.PetStoreSummary;
+import pet.store.dao.CustomerDao;
+import pet.store.dao.EmployeeDao;
+import pet.store.dao.PetStoreDao;
+
+/*
+ * Service class that writes every pet store, employee and customer as NDJSON (one JSON object per
+ * line).
+ * 
+ * Each table is read with a streaming query from the DAO, so only one fetch-size block of rows is
+ * held by the JDBC driver at a time. The queries select flat rows into DTOs instead of entities, so
+ * nothing piles up in the persistence context and it never has to be cleared in the middle of a
+ * result set. Every FLUSH_INTERVAL lines the output is flushed to the client, so heap use stays
+ * flat no matter how many rows are exported.
+ */
+@Service
+public class PetStoreExportService {
+
+  private static final int FLUSH_INTERVAL = 500;
+  private static final byte[] NEW_LINE = {'\n'};
+
+  @Autowired
+  private PetStoreDao petStoreDao;
+
+  @Autowired
+  private EmployeeDao employeeDao;
+
+  @Autowired
+  private CustomerDao customerDao;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  /*
+   * exportAll method takes the OutputStream of the response as a parameter. All pet stores are
+   * written first, then all employees, then all customers. Returns the number of lines written.
+   */
+  @Transactional(readOnly = true)
+  public long exportAll(OutputStream outputStream) throws IOException {
+    long lines = 0;
+
+    try (Stream<PetStoreSummary> petStores = petStoreDao.streamAll()) {
+      Iterator<PetStoreSummary> iterator = petStores.iterator();
+
+      while (iterator.hasNext()) {
+        writeLine(outputStream, new PetStoreExportLine("pet_store", null, null, iterator.next()));
+        lines = afterLine(outputStream, lines);
+      }
+    }
+
+    try (Stream<PetStoreEmployeeExportRow> employees = employeeDao.streamAll()) {
+      Iterator<PetStoreEmployeeExportRow> iterator = employees.iterator();
+
+      while (iterator.hasNext()) {
+        PetStoreEmployeeExportRow row = iterator.next();
+        PetStoreEmployee employee = new PetStoreEmployee(row.getEmployeeId(),
+            row.getEmployeeFirstName(), row.getEmployeeLastName(), row.getEmployeePhone(),
+            row.getEmployeeJobTitle());
+
+        writeLine(outputStream,
+            new PetStoreExportLine("employee", row.getPetStoreId(), null, employee));
+        lines = afterLine(outputStream, lines);
+      }
+    }
+
+    /*
+     * The customer query returns one row per pet store of a customer, in customer ID order. The
+     * pet store IDs are collected until the customer ID changes, then the customer is written.
+     */
+    try (Stream<PetStoreCustomerExportRow> customers = customerDao.streamAll()) {
+      Iterator<PetStoreCustomerExportRow> iterator = customers.iterator();
+      PetStoreCustomerExportRow customer = null;
+      Set<Long> petStoreIds = new LinkedHashSet<>();
+
+      while (iterator.hasNext()) {
+        PetStoreCustomerExportRow row = iterator.next();
+
+        if (Objects.nonNull(customer) && !customer.getCustomerId().equals(row.getCustomerId())) {
+          writeCustomer(outputStream, customer, petStoreIds);
+          lines = afterLine(outputStream, lines);
+          petStoreIds = new LinkedHashSet<>();
+        }
+
+        customer = row;
+
+        if (Objects.nonNull(row.getPetStoreId())) {
+          petStoreIds.add(row.getPetStoreId());
+        }
+      }
+
+      if (Objects.nonNull(customer)) {
+        writeCustomer(outputStream, customer, petStoreIds);
+        lines = afterLine(outputStream, lines);
+      }
+    }
+
+    outputStream.flush();
+    return lines;
+  }
+
+  private void writeCustomer(OutputStream outputStream, PetStoreCustomerExportRow row,
+      Set<Long> petStoreIds) throws IOException {
+    PetStoreCustomer customer = new PetStoreCustomer(row.getCustomerId(),
+        row.getCustomerFirstName(), row.getCustomerLastName(), row.getCustomerEmail());
+
+    writeLine(outputStream, new PetStoreExportLine("customer", null, petStoreIds, customer));
+  }
+
+  private void writeLine(OutputStream outputStream, PetStoreExportLine line) throws IOException {
+    outputStream.write(objectMapper.writeValueAsBytes(line));
+    outputStream.write(NEW_LINE);
+  }
+
+  // afterLine method counts the line just written. Every FLUSH_INTERVAL lines the output is sent.
+  private long afterLine(OutputStream outputStream, long lines) throws IOException {
+    lines++;
+
+    if (lines % FLUSH_INTERVAL == 0) {
+      outputStream.flush();
+    }
+    return lines;
+  }
+
+}
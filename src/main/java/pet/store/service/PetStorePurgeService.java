@@ -0,0 +1,226 @@
+package pet.store.service;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.function.IntSupplier;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import pet.store.config.CacheConfig;
+import pet.store.config.TaskExecutorConfig;
+import pet.store.controller.model.PetStoreDeleteJob;
+import pet.store.dao.EmployeeDao;
+import pet.store.dao.PetStoreDao;
+import pet.store.entity.PetStore;
+
+/*
+ * Service class that deletes pet stores with set-based statements.
+ * 
+ * Deleting the PetStore entity makes Hibernate load every employee and customer and run one DELETE
+ * per employee and per pet_store_customer row, all in one long transaction. Instead, the employees
+ * and the pet_store_customer rows are deleted chunk-size rows at a time, each chunk in its own
+ * short transaction, so locks are only held briefly. The last transaction locks the pet store row,
+ * removes anything added in the meantime and deletes the pet store and its statistics.
+ * 
+ * The delete as a whole is not atomic. Each committed chunk stays deleted, so a delete that fails
+ * or is stopped part way (an error, a lock timeout, the application stopping) leaves the pet store
+ * with some or all of its employees and customer links gone but the pet store row still there.
+ * Running the delete again finishes it. Readers can see the pet store shrink while it is deleted.
+ * So that they never see a stale copy of it, every chunk transaction locks the pet store row with
+ * a forced version increment (which changes its ETag) and evicts the pet store from the pet store
+ * cache and its employee and customer collections from the second-level cache when it commits.
+ * 
+ * A delete can also run in the background on the petStorePurgeExecutor (see TaskExecutorConfig).
+ * startPurge() returns a PetStoreDeleteJob straight away and the status of the last MAX_JOBS jobs
+ * can be read with retrieveJob(). When the executor queue is full startPurge() throws
+ * TaskRejectedException, which is returned as 503.
+ */
+@Service
+@Slf4j
+public class PetStorePurgeService {
+
+  private static final int MAX_JOBS = 1000;
+
+  @Autowired
+  private PetStoreDao petStoreDao;
+
+  @Autowired
+  private EmployeeDao employeeDao;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private CacheManager cacheManager;
+
+  @Autowired
+  private PetStoreStatsService petStoreStatsService;
+
+  @PersistenceContext
+  private EntityManager entityManager;
+
+  @Autowired
+  @Qualifier(TaskExecutorConfig.PURGE_EXECUTOR)
+  private TaskExecutor taskExecutor;
+
+  @Value("${pet-store.purge.chunk-size:1000}")
+  private int chunkSize;
+
+  private final Map<String, PetStoreDeleteJob> jobs =
+      Collections.synchronizedMap(new LinkedHashMap<>() {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PetStoreDeleteJob> eldest) {
+          return size() > MAX_JOBS;
+        }
+      });
+
+  /*
+   * purgePetStore method takes petStoreId as a parameter and deletes the pet store, its employees
+   * and its pet_store_customer rows. Returns the number of rows deleted. If no matching pet store
+   * is found, it throws NoSuchElementException.
+   */
+  public long purgePetStore(Long petStoreId) {
+    checkPetStoreExists(petStoreId);
+    return deleteInChunks(petStoreId);
+  }
+
+  /*
+   * startPurge method takes petStoreId as a parameter and starts deleting the pet store on a
+   * background thread. Returns the PetStoreDeleteJob used to follow the delete.
+   */
+  public PetStoreDeleteJob startPurge(Long petStoreId) {
+    checkPetStoreExists(petStoreId);
+
+    PetStoreDeleteJob job = new PetStoreDeleteJob();
+    job.setJobId(UUID.randomUUID().toString());
+    job.setPetStoreId(petStoreId);
+    job.setStartedAt(Instant.now());
+    job.setStatus(PetStoreDeleteJob.Status.RUNNING);
+    jobs.put(job.getJobId(), job);
+
+    try {
+      taskExecutor.execute(() -> runJob(job));
+    } catch (TaskRejectedException e) {
+      jobs.remove(job.getJobId());
+      throw e;
+    }
+    return job;
+  }
+
+  public PetStoreDeleteJob retrieveJob(String jobId) {
+    PetStoreDeleteJob job = jobs.get(jobId);
+
+    if (Objects.isNull(job)) {
+      throw new NoSuchElementException("Delete job with ID=" + jobId + " does not exist");
+    }
+    return job;
+  }
+
+  private void runJob(PetStoreDeleteJob job) {
+    try {
+      job.setRowsDeleted(deleteInChunks(job.getPetStoreId()));
+      job.setStatus(PetStoreDeleteJob.Status.COMPLETED);
+    } catch (RuntimeException e) {
+      log.error("Delete job {} for pet store ID={} failed", job.getJobId(), job.getPetStoreId(), e);
+      job.setMessage(e.toString());
+      job.setStatus(PetStoreDeleteJob.Status.FAILED);
+    } finally {
+      job.setFinishedAt(Instant.now());
+    }
+  }
+
+  private long deleteInChunks(Long petStoreId) {
+    long rows = deleteAll(petStoreId,
+        () -> employeeDao.deleteChunkByPetStoreId(petStoreId, chunkSize));
+    rows += deleteAll(petStoreId, () -> petStoreDao.unlinkCustomerChunk(petStoreId, chunkSize));
+
+    Long lastRows = transactionTemplate.execute(status -> {
+      if (petStoreDao.findAndLockByPetStoreId(petStoreId).isEmpty()) {
+        return 0L;
+      }
+
+      long remaining = 0;
+      int deleted;
+
+      do {
+        deleted = employeeDao.deleteChunkByPetStoreId(petStoreId, chunkSize);
+        remaining += deleted;
+      } while (deleted == chunkSize);
+
+      do {
+        deleted = petStoreDao.unlinkCustomerChunk(petStoreId, chunkSize);
+        remaining += deleted;
+      } while (deleted == chunkSize);
+
+      petStoreStatsService.deleteStats(petStoreId);
+      return remaining + petStoreDao.deleteInBulkByPetStoreId(petStoreId);
+    });
+
+    cacheManager.getCache(CacheConfig.PET_STORE_CACHE).evict(petStoreId);
+    log.info("Deleted pet store ID={} ({} rows)", petStoreId, rows + lastRows);
+    return rows + lastRows;
+  }
+
+  /*
+   * deleteAll method runs the given chunk delete, each time in a new transaction, until a chunk
+   * deletes fewer than chunk-size rows. Returns the total number of rows deleted.
+   */
+  private long deleteAll(Long petStoreId, IntSupplier chunkDelete) {
+    long rows = 0;
+    int deleted;
+
+    do {
+      deleted = transactionTemplate.execute(status -> {
+        entityManager.find(PetStore.class, petStoreId, LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+        evictOnCommit(petStoreId);
+        return chunkDelete.getAsInt();
+      });
+      rows += deleted;
+    } while (deleted == chunkSize);
+
+    return rows;
+  }
+
+  /*
+   * evictOnCommit method drops the pet store from the pet store cache and its employee and customer
+   * collections from the second-level cache once the current transaction commits.
+   */
+  private void evictOnCommit(Long petStoreId) {
+    org.hibernate.Cache secondLevelCache =
+        entityManager.getEntityManagerFactory().getCache().unwrap(org.hibernate.Cache.class);
+
+    cacheManager.getCache(CacheConfig.PET_STORE_CACHE).evict(petStoreId);
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        secondLevelCache.evictCollectionData(PetStore.class.getName() + ".employees", petStoreId);
+        secondLevelCache.evictCollectionData(PetStore.class.getName() + ".customers", petStoreId);
+      }
+    });
+  }
+
+  private void checkPetStoreExists(Long petStoreId) {
+    if (!petStoreDao.existsById(petStoreId)) {
+      throw new NoSuchElementException("Pet Store with ID = " + petStoreId + " does not exist");
+    }
+  }
+
+}
@@ -1,15 +1,52 @@
 package pet.store.service;
 
-import java.util.LinkedList;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.StringUtils;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import lombok.extern.slf4j.Slf4j;
+import pet.store.config.CacheConfig;
+import pet.store.config.ReadReplicaRoutingDataSource;
+import pet.store.controller.model.KeysetPage;
 import pet.store.controller.model.PetStoreCustomer;
 import pet.store.controller.model.PetStoreData;
 import pet.store.controller.model.PetStoreEmployee;
+import pet.store.controller.model.PetStoreEmployeeResult;
+import pet.store.controller.model.PetStoreMultiGetResult;
+import pet.store.controller.model.PetStoreSummary;
 import pet.store.dao.CustomerDao;
 import pet.store.dao.EmployeeDao;
 import pet.store.dao.PetStoreDao;
@@ -18,8 +55,20 @@ import pet.store.entity.Employee;
 import pet.store.entity.PetStore;
 
 @Service
+@Timed(value = "pet.store.service", percentiles = {0.5, 0.95, 0.99})
+@Slf4j
 public class PetStoreService {
 
+  // Page size limits for the paginated listing methods.
+  public static final int DEFAULT_PAGE_SIZE = 20;
+  public static final int MAX_PAGE_SIZE = 100;
+
+  // Largest number of employees accepted by one call to saveEmployees.
+  public static final int MAX_EMPLOYEE_BATCH = 10_000;
+
+  // Largest number of pet store IDs accepted by one call to retrievePetStoresByIds.
+  public static final int MAX_MULTI_GET = 100;
+
   /*
    * Added PetStoreDao object petStoreDao as a private instance variable.
    * 
@@ -34,19 +83,62 @@ public class PetStoreService {
   @Autowired
   private CustomerDao customerDao;
 
+  @Autowired
+  private CacheManager cacheManager;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @Autowired
+  private PlatformTransactionManager transactionManager;
+
+  @Autowired
+  private PetStorePurgeService petStorePurgeService;
+
+  @Autowired
+  private PetStoreStatsService petStoreStatsService;
+
+  @PersistenceContext
+  private EntityManager entityManager;
 
-  // savePetStore method takes a PetStoreData object as a parameter and returns a PetStoreData
-  // object.
+  @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+  private int jdbcBatchSize;
+
+
+  // savePetStore method takes a PetStoreData object and the expected version of the pet store as
+  // parameters and returns a PetStoreData object. expectedVersion comes from the If-Match header
+  // and may be null. If it is given and the pet store has a different version,
+  // OptimisticLockingFailureException is thrown and nothing is changed. The cached copy of an
+  // existing pet store is evicted when the transaction commits.
 
   @Transactional(readOnly = false)
-  public PetStoreData savePetStore(PetStoreData petStoreData) {
+  @CacheEvict(cacheNames = CacheConfig.PET_STORE_CACHE, key = "#petStoreData.petStoreId",
+      condition = "#petStoreData.petStoreId != null")
+  public PetStoreData savePetStore(PetStoreData petStoreData, Long expectedVersion) {
     Long petStoreId = petStoreData.getPetStoreId();
     PetStore petStore = findOrCreatePetStore(petStoreId);
+    checkVersion(petStore, expectedVersion);
     copyPetStoreFields(petStore, petStoreData);
 
-    // returning new PetStoreData Object created from the return value of the save() method.
-    return new PetStoreData(petStoreDao.save(petStore));
+    // returning new PetStoreData Object created from the return value of the saveAndFlush()
+    // method. The flush makes Hibernate bump the version before it is copied.
+    return new PetStoreData(petStoreDao.saveAndFlush(petStore));
+
+  }
 
+  /*
+   * checkVersion method takes PetStore object and the expected version as parameters. It throws
+   * OptimisticLockingFailureException if an expected version is given and the pet store has a
+   * different one.
+   */
+  private void checkVersion(PetStore petStore, Long expectedVersion) {
+    if (Objects.nonNull(expectedVersion) && expectedVersion != petStore.getVersion()) {
+      throw new OptimisticLockingFailureException("Pet Store with ID = " + petStore.getPetStoreId()
+          + " has version " + petStore.getVersion() + ", not " + expectedVersion);
+    }
   }
 
   /*
@@ -75,6 +167,117 @@ public class PetStoreService {
         () -> new NoSuchElementException("Pet Store with ID = " + petStoreId + " does not exist"));
   }
 
+  /*
+   * Methods associated with PATCH (JSON Merge Patch, RFC 7396) updates.
+   * 
+   * patchPetStore(), patchEmployee() and patchCustomer() apply the patch to a DTO copy of the row.
+   * Fields in the patch are changed, fields set to null are cleared and fields left out are kept.
+   * The DTO is then copied back to the entity. The entities use @DynamicUpdate and Hibernate only
+   * writes fields whose value changed, so the UPDATE lists only the changed columns and a patch
+   * that changes nothing runs no UPDATE at all. An employee or customer patch that changes nothing
+   * also leaves the pet store version and the cached PetStoreData alone: the pet stores are only
+   * locked and evicted from the cache when a field changed.
+   * 
+   * applyMergePatch(): applies the patch to the DTO with Jackson. A field the DTO does not have
+   * (including the customers and employees collections) throws IllegalArgumentException.
+   * 
+   * checkIdUnchanged(): throws IllegalArgumentException if the patch tries to change the ID.
+   * 
+   */
+
+  @Transactional(readOnly = false)
+  @CacheEvict(cacheNames = CacheConfig.PET_STORE_CACHE, key = "#petStoreId")
+  public PetStoreSummary patchPetStore(Long petStoreId, JsonNode patch, Long expectedVersion) {
+    PetStore petStore = findPetStoreById(petStoreId);
+    checkVersion(petStore, expectedVersion);
+
+    PetStoreSummary patched = applyMergePatch(new PetStoreSummary(petStore), patch);
+    checkIdUnchanged("petStoreId", petStoreId, patched.getPetStoreId());
+
+    petStore.setPetStoreName(patched.getPetStoreName());
+    petStore.setPetStoreAddress(patched.getPetStoreAddress());
+    petStore.setPetStoreCity(patched.getPetStoreCity());
+    petStore.setPetStoreState(patched.getPetStoreState());
+    petStore.setPetStoreZip(patched.getPetStoreZip());
+    petStore.setPetStorePhone(patched.getPetStorePhone());
+
+    // Flushing here bumps the version (only if something changed) before it is returned.
+    petStoreDao.flush();
+    return new PetStoreSummary(petStore);
+  }
+
+  @Transactional(readOnly = false)
+  public PetStoreEmployee patchEmployee(Long petStoreId, Long employeeId, JsonNode patch) {
+    Employee employee = findEmployeeById(petStoreId, employeeId);
+    PetStoreEmployee current = new PetStoreEmployee(employee);
+
+    PetStoreEmployee patched = applyMergePatch(new PetStoreEmployee(employee), patch);
+    checkIdUnchanged("employeeId", employeeId, patched.getEmployeeId());
+
+    if (!patched.equals(current)) {
+      lockPetStoreById(petStoreId);
+      evictPetStores(List.of(petStoreId));
+      copyEmployeeFields(employee, patched);
+      petStoreStatsService.recordEmployee(petStoreId, false, current.getEmployeeJobTitle(),
+          patched.getEmployeeJobTitle());
+    }
+    return patched;
+  }
+
+  @Transactional(readOnly = false)
+  public PetStoreCustomer patchCustomer(Long petStoreId, Long customerId, JsonNode patch) {
+    Customer customer = findCustomerById(petStoreId, customerId);
+    PetStoreCustomer current = new PetStoreCustomer(customer);
+
+    PetStoreCustomer patched = applyMergePatch(new PetStoreCustomer(customer), patch);
+    checkIdUnchanged("customerId", customerId, patched.getCustomerId());
+
+    if (!patched.equals(current)) {
+      List<Long> petStoreIds = new ArrayList<>(petStoreDao.findPetStoreIdsByCustomerId(customerId));
+      Collections.sort(petStoreIds);
+      petStoreIds.forEach(this::lockPetStoreById);
+      evictPetStores(petStoreIds);
+      copyCustomerFields(customer, patched);
+    }
+    return patched;
+  }
+
+  private <T> T applyMergePatch(T target, JsonNode patch) {
+    if (Objects.isNull(patch) || !patch.isObject()) {
+      throw new IllegalArgumentException("A merge patch must be a JSON object");
+    }
+
+    try {
+      return objectMapper.readerForUpdating(target)
+          .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES).readValue(patch);
+    } catch (IOException e) {
+      throw new IllegalArgumentException("Invalid merge patch: " + e.getMessage());
+    }
+  }
+
+  private void checkIdUnchanged(String field, Long id, Long patchedId) {
+    if (!Objects.equals(id, patchedId)) {
+      throw new IllegalArgumentException(field + " cannot be changed");
+    }
+  }
+
+  /*
+   * lockPetStoreById method takes in petStoreId as a parameter. It is used by the methods that
+   * change the employees or customers of a pet store. The pet store row is read with SELECT ... FOR
+   * UPDATE and its version is bumped straight away, so the version (and ETag) changes whenever the
+   * employees or customers change, and concurrent changes to the same pet store wait for each other
+   * instead of failing. If no matching pet store is found, it throws NoSuchElementException.
+   */
+  private PetStore lockPetStoreById(Long petStoreId) {
+    PetStore petStore = entityManager.find(PetStore.class, petStoreId,
+        LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+
+    if (Objects.isNull(petStore)) {
+      throw new NoSuchElementException("Pet Store with ID = " + petStoreId + " does not exist");
+    }
+    return petStore;
+  }
+
   /*
    * copyPetStoreFields method takes PetStore object and PetStoreData object as parameters. Matching
    * fields are copied from the PetStoreData object to the PetStore object
@@ -104,14 +307,22 @@ public class PetStoreService {
    * If employee Id is null, new Employee object is returned. if employee is not null,
    * findEmployeeById() method is called.
    * 
+   * The employee count and job title counts of the pet store statistics are updated in the same
+   * transaction.
+   * 
    */
 
   @Transactional(readOnly = false)
+  @CacheEvict(cacheNames = CacheConfig.PET_STORE_CACHE, key = "#petStoreId")
   public PetStoreEmployee saveEmployee(Long petStoreId, PetStoreEmployee petStoreEmployee) {
 
-    PetStore petStore = findPetStoreById(petStoreId);
+    PetStore petStore = lockPetStoreById(petStoreId);
     Employee employee = findOrCreateEmployee(petStoreEmployee.getEmployeeId(), petStoreId);
+    boolean added = Objects.isNull(employee.getEmployeeId());
+    String oldJobTitle = employee.getEmployeeJobTitle();
     copyEmployeeFields(employee, petStoreEmployee);
+    petStoreStatsService.recordEmployee(petStoreId, added, oldJobTitle,
+        employee.getEmployeeJobTitle());
     employee.setPetStore(petStore);
     petStore.getEmployees().add(employee);
     Employee dbEmployee = employeeDao.save(employee);
@@ -124,7 +335,7 @@ public class PetStoreService {
     Employee employee = employeeDao.findById(employeeId).orElseThrow(
         () -> new NoSuchElementException("Employee with ID=" + employeeId + " does not exist"));
 
-    if (employee.getPetStore().getPetStoreId() != petStoreId) {
+    if (!Objects.equals(employee.getPetStore().getPetStoreId(), petStoreId)) {
       throw new IllegalArgumentException("Employee with ID= " + employeeId
           + " does not belong to pet store with ID=" + petStoreId);
     }
@@ -143,6 +354,125 @@ public class PetStoreService {
     return employee;
   }
 
+  /*
+   * Methods associated with adding PetStore Employees in bulk.
+   * 
+   * saveEmployees() method: takes a petStoreId and a list of PetStoreEmployee as parameters and
+   * returns one PetStoreEmployeeResult per employee, in request order. Employees without an ID are
+   * inserted and employees with an ID are updated. An employee that does not exist or belongs to
+   * another pet store is reported as FAILED and skipped; the other employees are still saved.
+   * 
+   * The employees are saved in chunks of the JDBC batch size. Each chunk is flushed as batched
+   * inserts and updates and then the persistence context is cleared, so memory use does not grow
+   * with the size of the request. Unlike saveEmployee(), the pet store's employees collection is
+   * never loaded.
+   * 
+   * saveEmployeeChunk() method: saves one chunk. The existing employees of the chunk are read with
+   * a single findAllById() call.
+   * 
+   */
+
+  @Transactional(readOnly = false)
+  @CacheEvict(cacheNames = CacheConfig.PET_STORE_CACHE, key = "#petStoreId")
+  public List<PetStoreEmployeeResult> saveEmployees(Long petStoreId,
+      List<PetStoreEmployee> petStoreEmployees) {
+    if (petStoreEmployees.size() > MAX_EMPLOYEE_BATCH) {
+      throw new IllegalArgumentException(
+          "No more than " + MAX_EMPLOYEE_BATCH + " employees can be saved in one request");
+    }
+
+    lockPetStoreById(petStoreId);
+    evictCollectionsOnCommit("employees", List.of(petStoreId));
+
+    List<PetStoreEmployeeResult> results = new ArrayList<>(petStoreEmployees.size());
+    Map<String, Long> jobTitleChanges = new HashMap<>();
+
+    for (int start = 0; start < petStoreEmployees.size(); start += jdbcBatchSize) {
+      int end = Math.min(start + jdbcBatchSize, petStoreEmployees.size());
+
+      saveEmployeeChunk(petStoreId, petStoreEmployees.subList(start, end), start, results,
+          jobTitleChanges);
+      entityManager.flush();
+      entityManager.clear();
+    }
+
+    long added = results.stream()
+        .filter(result -> result.getStatus() == PetStoreEmployeeResult.Status.CREATED).count();
+    petStoreStatsService.recordEmployeeChanges(petStoreId, added, jobTitleChanges);
+
+    return results;
+  }
+
+  private void saveEmployeeChunk(Long petStoreId, List<PetStoreEmployee> chunk, int offset,
+      List<PetStoreEmployeeResult> results, Map<String, Long> jobTitleChanges) {
+    PetStore petStore = entityManager.getReference(PetStore.class, petStoreId);
+    Map<Long, Employee> existingEmployees = new HashMap<>();
+
+    List<Long> employeeIds = chunk.stream().map(PetStoreEmployee::getEmployeeId)
+        .filter(Objects::nonNull).toList();
+
+    for (Employee employee : employeeDao.findAllById(employeeIds)) {
+      existingEmployees.put(employee.getEmployeeId(), employee);
+    }
+
+    for (int i = 0; i < chunk.size(); i++) {
+      PetStoreEmployee petStoreEmployee = chunk.get(i);
+      Long employeeId = petStoreEmployee.getEmployeeId();
+      int index = offset + i;
+
+      if (Objects.isNull(employeeId)) {
+        Employee employee = new Employee();
+        copyEmployeeFields(employee, petStoreEmployee);
+        employee.setPetStore(petStore);
+        entityManager.persist(employee);
+        PetStoreStatsService.addJobTitleChange(jobTitleChanges, null,
+            employee.getEmployeeJobTitle());
+
+        results.add(new PetStoreEmployeeResult(index, employee.getEmployeeId(),
+            PetStoreEmployeeResult.Status.CREATED, null));
+        continue;
+      }
+
+      Employee employee = existingEmployees.get(employeeId);
+
+      if (Objects.isNull(employee)) {
+        results.add(new PetStoreEmployeeResult(index, employeeId,
+            PetStoreEmployeeResult.Status.FAILED,
+            "Employee with ID=" + employeeId + " does not exist"));
+      } else if (!petStoreId.equals(employee.getPetStore().getPetStoreId())) {
+        results.add(new PetStoreEmployeeResult(index, employeeId,
+            PetStoreEmployeeResult.Status.FAILED, "Employee with ID= " + employeeId
+                + " does not belong to pet store with ID=" + petStoreId));
+      } else {
+        String oldJobTitle = employee.getEmployeeJobTitle();
+        copyEmployeeFields(employee, petStoreEmployee);
+        PetStoreStatsService.addJobTitleChange(jobTitleChanges, oldJobTitle,
+            employee.getEmployeeJobTitle());
+        results.add(new PetStoreEmployeeResult(index, employeeId,
+            PetStoreEmployeeResult.Status.UPDATED, null));
+      }
+    }
+  }
+
+  /*
+   * evictCollectionsOnCommit method drops the given PetStore collection ("employees" or
+   * "customers") of each pet store from the second-level cache once the transaction commits. It is
+   * used when rows are added without loading the collection, so Hibernate cannot tell that the
+   * cached collection is out of date.
+   */
+  private void evictCollectionsOnCommit(String collection, Collection<Long> petStoreIds) {
+    org.hibernate.Cache secondLevelCache =
+        entityManager.getEntityManagerFactory().getCache().unwrap(org.hibernate.Cache.class);
+    String role = PetStore.class.getName() + "." + collection;
+
+    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+      @Override
+      public void afterCommit() {
+        petStoreIds.forEach(petStoreId -> secondLevelCache.evictCollectionData(role, petStoreId));
+      }
+    });
+  }
+
   /*
    * copyEmployeeFields method takes Employee object and PetStoreEmployee object as parameters.
    * Matching fields are copied from the PetStoreEmployee object to the Employee object.
@@ -165,43 +495,105 @@ public class PetStoreService {
    * method findById(), Customer object is returned. If the customer isn't found, new
    * NoSuchElementException() is thrown.
    * 
-   * Customer object has a list of PetStore Object. We loop through the list of PetStore objects
-   * looking for the petStore with given pet store Id. If customer is not found in the particular
-   * petStore, IllegalArgumentException is thrown.
+   * The customerDao method isCustomerOfPetStore() checks the pet_store_customer join table for the
+   * customer and pet store pair. If customer is not found in the particular petStore,
+   * IllegalArgumentException is thrown.
    * 
    * findOrCreateCustomer(): takes customerId and petStoreId as parameters. returns Customer object.
    * If customer Id is null, new customer object is returned. if customer is not null,
    * findCustomerById() method is called.
    * 
+   * A new customer is linked to the pet store with a single insert into pet_store_customer, so
+   * neither side of the customer/pet store relationship is loaded. The customer count of the pet
+   * store statistics is updated in the same transaction.
+   * 
+   * A customer can shop at many pet stores, so when an existing customer is changed every pet
+   * store the customer shops at is locked (bumping its version) and its cached copy is evicted,
+   * not just the one in the URI. The pet stores are locked in ID order to avoid deadlocks.
+   * 
    */
 
   @Transactional(readOnly = false)
+  @CacheEvict(cacheNames = CacheConfig.PET_STORE_CACHE, key = "#petStoreId")
   public PetStoreCustomer saveCustomer(Long petStoreId, PetStoreCustomer petStoreCustomer) {
 
-    PetStore petStore = findPetStoreById(petStoreId);
-    Customer customer = findOrCreateCustomer(petStoreCustomer.getCustomerId(), petStoreId);
+    Long customerId = petStoreCustomer.getCustomerId();
+
+    if (Objects.isNull(customerId)) {
+      lockPetStoreById(petStoreId);
+    } else {
+      List<Long> petStoreIds = new ArrayList<>(petStoreDao.findPetStoreIdsByCustomerId(customerId));
+      Collections.sort(petStoreIds);
+      petStoreIds.forEach(this::lockPetStoreById);
+      evictPetStores(petStoreIds);
+    }
+
+    Customer customer = findOrCreateCustomer(customerId, petStoreId);
     copyCustomerFields(customer, petStoreCustomer);
-    customer.getPetStore().add(petStore);
-    petStore.getCustomers().add(customer);
     Customer dbCustomer = customerDao.save(customer);
 
+    if (Objects.isNull(customerId)) {
+      petStoreDao.linkCustomer(petStoreId, dbCustomer.getCustomerId());
+      petStoreStatsService.recordCustomers(petStoreId, 1);
+    }
+
     return new PetStoreCustomer(dbCustomer);
 
   }
 
-  private Customer findCustomerById(Long petStoreId, Long customerId) {
-    Customer customer = customerDao.findById(customerId).orElseThrow(
-        () -> new NoSuchElementException("Customer with ID=" + customerId + " does not exist"));
+  /*
+   * Method used by the customer registration queue to add a batch of new customers in one
+   * transaction. Takes the new customers grouped by pet store ID and returns the IDs of the pet
+   * stores that no longer exist.
+   * 
+   * Each pet store is locked once for the whole batch, in ID order. The customers are inserted and
+   * the pet_store_customer rows of the whole batch are written with one JDBC batch. Customers of a
+   * pet store that no longer exists are not saved; the queue dead-letters them, since their
+   * registration was already accepted.
+   */
 
-    boolean found = false;
+  @Transactional(readOnly = false)
+  public List<Long> saveNewCustomers(Map<Long, List<PetStoreCustomer>> customersByPetStore) {
+    List<Long> petStoreIds = new ArrayList<>(customersByPetStore.keySet());
+    Collections.sort(petStoreIds);
+
+    List<Long> savedPetStoreIds = new ArrayList<>();
+    List<Long> missingPetStoreIds = new ArrayList<>();
+    List<Object[]> links = new ArrayList<>();
+
+    for (Long petStoreId : petStoreIds) {
+      List<PetStoreCustomer> petStoreCustomers = customersByPetStore.get(petStoreId);
+      PetStore petStore = entityManager.find(PetStore.class, petStoreId,
+          LockModeType.PESSIMISTIC_FORCE_INCREMENT);
+
+      if (Objects.isNull(petStore)) {
+        missingPetStoreIds.add(petStoreId);
+        continue;
+      }
 
-    for (PetStore petStore : customer.getPetStore()) {
-      if (petStore.getPetStoreId() == petStoreId) {
-        found = true;
-        break;
+      for (PetStoreCustomer petStoreCustomer : petStoreCustomers) {
+        Customer customer = new Customer();
+        copyCustomerFields(customer, petStoreCustomer);
+        customer.setCustomerId(null);
+        entityManager.persist(customer);
+        links.add(new Object[] {petStoreId, customer.getCustomerId()});
       }
+      petStoreStatsService.recordCustomers(petStoreId, petStoreCustomers.size());
+      savedPetStoreIds.add(petStoreId);
     }
-    if (!found) {
+
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO pet_store_customer (pet_store_id, customer_id) VALUES (?, ?)", links);
+    evictPetStores(savedPetStoreIds);
+    evictCollectionsOnCommit("customers", savedPetStoreIds);
+    return missingPetStoreIds;
+  }
+
+  private Customer findCustomerById(Long petStoreId, Long customerId) {
+    Customer customer = customerDao.findById(customerId).orElseThrow(
+        () -> new NoSuchElementException("Customer with ID=" + customerId + " does not exist"));
+
+    if (!customerDao.isCustomerOfPetStore(customerId, petStoreId)) {
       throw new IllegalArgumentException(
           "Customer with ID= " + customerId + " does not shop at pet store with ID=" + petStoreId);
     }
@@ -220,6 +612,25 @@ public class PetStoreService {
     return customer;
   }
 
+  /*
+   * Method to remove a customer from a pet store. Takes petStoreId and customerId as parameters and
+   * deletes the pet_store_customer row that links them. The customer row itself is kept because the
+   * customer may shop at other pet stores. If the customer does not shop at the pet store,
+   * NoSuchElementException is thrown.
+   */
+
+  @Transactional(readOnly = false)
+  @CacheEvict(cacheNames = CacheConfig.PET_STORE_CACHE, key = "#petStoreId")
+  public void removeCustomer(Long petStoreId, Long customerId) {
+    lockPetStoreById(petStoreId);
+
+    if (petStoreDao.unlinkCustomer(petStoreId, customerId) == 0) {
+      throw new NoSuchElementException(
+          "Customer with ID=" + customerId + " does not shop at pet store with ID=" + petStoreId);
+    }
+    petStoreStatsService.recordCustomers(petStoreId, -1);
+  }
+
   /*
    * copyCustomerFields method takes Customer object and PetStoreCustomer object as parameters.
    * Matching fields are copied from the PetStoreCustomer object to the Customer object.
@@ -234,51 +645,338 @@ public class PetStoreService {
   }
 
   /*
-   * Method to list all pet stores. This methods takes no parameters. Call is made to findAll()
-   * method in the petStoreDao. List of PetStore objects is converted to PetStoreData objects. All
-   * the customer and employee objects in each PetStoreData object is removed. Summary list of pet
-   * stores is returned.
+   * Method to list pet stores one page at a time. This method takes the cursor (ID of the last pet
+   * store on the previous page), the page size and optional city, state and zip filters. One extra
+   * row is read so we know if there is a next page without running a count query. The projection
+   * query returns PetStoreSummary objects directly, so no customer or employee is loaded. Page of
+   * summary pet stores is returned along with the cursor for the next page.
    * 
    */
   @Transactional(readOnly = true)
-  public List<PetStoreData> retrieveAllPetStore() {
-    List<PetStore> petStores = petStoreDao.findAll();
+  public KeysetPage<PetStoreSummary, Long> retrieveAllPetStore(Long afterId, Integer limit,
+      String city, String state, String zip) {
+    int pageSize = pageSize(limit);
+    List<PetStoreSummary> summaries = petStoreDao.findSummaryPageAfter(
+        Objects.isNull(afterId) ? 0L : afterId, emptyToNull(city), emptyToNull(state),
+        emptyToNull(zip), PageRequest.of(0, pageSize + 1));
+
+    return toKeysetPage(summaries, pageSize, PetStoreSummary::getPetStoreId);
+  }
 
-    List<PetStoreData> result = new LinkedList<>();
+  /*
+   * Method to search customers one page at a time. An email is looked up exactly; otherwise the
+   * last name (and optionally the first name) is matched as a prefix. One of email or lastName is
+   * required so every search runs on an index. The optional petStoreId limits the search to the
+   * customers of one pet store. The cursor holds the sort key of the last customer on the page:
+   * the customer ID for an email search, the last name, first name and customer ID for a name
+   * search.
+   */
+  @Transactional(readOnly = true)
+  public KeysetPage<PetStoreCustomer, String> searchCustomers(String email, String lastName,
+      String firstName, Long petStoreId, String cursor, Integer limit) {
+    int pageSize = pageSize(limit);
+    PageRequest page = PageRequest.of(0, pageSize + 1);
+
+    if (Objects.nonNull(emptyToNull(email))) {
+      JsonNode after = fromCursor(cursor, 1);
+      List<PetStoreCustomer> customers = customerDao.searchByEmail(emptyToNull(email),
+          petStoreId, Objects.isNull(after) ? 0L : after.get(0).asLong(), page);
+
+      return toKeysetPage(customers, pageSize,
+          customer -> toCursor(customer.getCustomerId()));
+    }
+
+    if (Objects.nonNull(emptyToNull(lastName))) {
+      JsonNode after = fromCursor(cursor, 3);
+      List<PetStoreCustomer> customers = customerDao.searchByName(toPrefix(lastName),
+          toPrefix(firstName), petStoreId, cursorText(after, 0), cursorText(after, 1),
+          Objects.isNull(after) ? 0L : after.get(2).asLong(), page);
+
+      return toKeysetPage(customers, pageSize, customer -> toCursor(
+          customer.getCustomerLastName(), customer.getCustomerFirstName(),
+          customer.getCustomerId()));
+    }
+
+    throw new IllegalArgumentException("Customer search needs an email or a lastName");
+  }
 
-    for (PetStore petStore : petStores) {
-      PetStoreData psd = new PetStoreData(petStore);
+  /*
+   * Method to search employees one page at a time by last name prefix (optionally narrowed by
+   * first name and job title prefixes) or by job title prefix alone. One of lastName or jobTitle
+   * is required. The optional petStoreId limits the search to the employees of one pet store. The
+   * cursor holds the last name, first name and employee ID (name search) or the job title and
+   * employee ID (job title search) of the last employee on the page.
+   */
+  @Transactional(readOnly = true)
+  public KeysetPage<PetStoreEmployee, String> searchEmployees(String lastName, String firstName,
+      String jobTitle, Long petStoreId, String cursor, Integer limit) {
+    int pageSize = pageSize(limit);
+    PageRequest page = PageRequest.of(0, pageSize + 1);
+
+    if (Objects.nonNull(emptyToNull(lastName))) {
+      JsonNode after = fromCursor(cursor, 3);
+      List<PetStoreEmployee> employees = employeeDao.searchByName(toPrefix(lastName),
+          toPrefix(firstName), toPrefix(jobTitle), petStoreId, cursorText(after, 0),
+          cursorText(after, 1), Objects.isNull(after) ? 0L : after.get(2).asLong(), page);
+
+      return toKeysetPage(employees, pageSize, employee -> toCursor(
+          employee.getEmployeeLastName(), employee.getEmployeeFirstName(),
+          employee.getEmployeeId()));
+    }
 
-      psd.getCustomers().clear();
-      psd.getEmployees().clear();
+    if (Objects.nonNull(emptyToNull(jobTitle))) {
+      JsonNode after = fromCursor(cursor, 2);
+      List<PetStoreEmployee> employees = employeeDao.searchByJobTitle(toPrefix(jobTitle),
+          petStoreId, cursorText(after, 0), Objects.isNull(after) ? 0L : after.get(1).asLong(),
+          page);
 
-      result.add(psd);
+      return toKeysetPage(employees, pageSize,
+          employee -> toCursor(employee.getEmployeeJobTitle(), employee.getEmployeeId()));
     }
-    return result;
+
+    throw new IllegalArgumentException("Employee search needs a lastName or a jobTitle");
+  }
+
+  /*
+   * Search cursor helper methods. toCursor writes the sort key of a row as a JSON array and
+   * encodes it as URL safe Base64, so the client can pass it back as the "after" parameter as is.
+   * fromCursor decodes it again and checks it has the number of values the search needs; it
+   * returns null for the first page (no cursor) and throws IllegalArgumentException for a cursor
+   * that was not made by the same search. cursorText returns a value of the key as text (null
+   * stays null).
+   */
+  private String toCursor(Object... key) {
+    try {
+      return Base64.getUrlEncoder().withoutPadding()
+          .encodeToString(objectMapper.writeValueAsBytes(key));
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot write search cursor", e);
+    }
+  }
+
+  private JsonNode fromCursor(String cursor, int size) {
+    if (Objects.isNull(emptyToNull(cursor))) {
+      return null;
+    }
+
+    try {
+      JsonNode key = objectMapper.readTree(Base64.getUrlDecoder().decode(cursor.trim()));
+
+      if (key.isArray() && key.size() == size) {
+        return key;
+      }
+    } catch (IOException | IllegalArgumentException e) {
+      /* Reported below. */
+    }
+    throw new IllegalArgumentException("Invalid search cursor " + cursor);
+  }
+
+  private String cursorText(JsonNode key, int index) {
+    if (Objects.isNull(key) || key.get(index).isNull()) {
+      return null;
+    }
+    return key.get(index).asText();
+  }
+
+  /*
+   * toPrefix method turns a search value into a LIKE pattern that matches values starting with it.
+   * The LIKE wildcards % and _ and the escape character ! are escaped so they match literally.
+   * Returns null when no value is given.
+   */
+  private String toPrefix(String value) {
+    String prefix = emptyToNull(value);
+
+    if (Objects.isNull(prefix)) {
+      return null;
+    }
+    return prefix.replace("!", "!!").replace("%", "!%").replace("_", "!_") + "%";
+  }
+
+  /*
+   * toKeysetPage method takes the rows read for a page (page size plus one), the page size and a
+   * function that returns the cursor of a row. The extra row is dropped and the cursor of the last
+   * row on the page becomes the next cursor when there are more rows.
+   */
+  private <T, C> KeysetPage<T, C> toKeysetPage(List<T> rows, int pageSize,
+      Function<T, C> cursorOf) {
+    if (rows.size() <= pageSize) {
+      return new KeysetPage<>(rows, null);
+    }
+
+    List<T> items = new ArrayList<>(rows.subList(0, pageSize));
+    return new KeysetPage<>(items, cursorOf.apply(items.get(pageSize - 1)));
+  }
+
+  /*
+   * pageSize method returns the requested page size, using the default when no size is given and
+   * keeping it between 1 and MAX_PAGE_SIZE.
+   */
+  private int pageSize(Integer limit) {
+    if (Objects.isNull(limit)) {
+      return DEFAULT_PAGE_SIZE;
+    }
+    return Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+  }
+
+  private String emptyToNull(String value) {
+    return StringUtils.hasText(value) ? value.trim() : null;
+  }
+
+  /*
+   * evictPetStores method removes the cached PetStoreData of each of the given pet store IDs. The
+   * cache is transaction aware, so the evictions happen when the current transaction commits.
+   */
+  private void evictPetStores(Collection<Long> petStoreIds) {
+    Cache cache = cacheManager.getCache(CacheConfig.PET_STORE_CACHE);
+
+    for (Long petStoreId : petStoreIds) {
+      cache.evict(petStoreId);
+    }
+  }
+
+  /*
+   * Method to get the current version of a pet store, used for the ETag of GET
+   * /pet_store/{petStoreId}. Takes in petStoreId as a parameter. Only the version column is read
+   * (a primary key lookup). The cached copy is not trusted for this, because it can be older than
+   * the row. If no matching pet store is found, it throws NoSuchElementException.
+   */
+
+  public long retrievePetStoreVersion(Long petStoreId) {
+    return petStoreDao.findVersionByPetStoreId(petStoreId).orElseThrow(
+        () -> new NoSuchElementException("Pet Store with ID = " + petStoreId + " does not exist"));
   }
 
   /*
    * Method to list petStore associated with the petStore Id. Takes in petStoreId as a parameter,
-   * findById() method is called, results is converted to PetStoreData object and returned.
+   * findFullPetStoreById() method is called so the customers and employees are loaded up front
+   * (two SQL statements in total) instead of lazily while PetStoreData is built. Results is
+   * converted to PetStoreData object and returned.
+   * 
+   * The result is cached by pet store ID (see CacheConfig). A cached copy is only used when its
+   * version matches the version column of the row, so a read that cached the old pet store just
+   * after a write evicted it is detected and replaced instead of being served until it expires.
+   * The cache is only filled from the primary (see loadForCache), so a lagging read replica never
+   * puts an old pet store in it.
    * 
    */
 
   @Transactional(readOnly = true)
   public PetStoreData retrievePetStoreByPetStoreId(Long petStoreId) {
-    PetStore petStore = findPetStoreById(petStoreId);
-    return new PetStoreData(petStore);
+    long version = retrievePetStoreVersion(petStoreId);
+    Cache cache = cacheManager.getCache(CacheConfig.PET_STORE_CACHE);
+    PetStoreData cached = cache.get(petStoreId, PetStoreData.class);
+
+    if (Objects.nonNull(cached) && Objects.equals(cached.getVersion(), version)) {
+      return cached;
+    }
+
+    PetStoreData petStoreData = loadForCache(() -> new PetStoreData(
+        petStoreDao.findFullPetStoreById(petStoreId).orElseThrow(() -> new NoSuchElementException(
+            "Pet Store with ID = " + petStoreId + " does not exist"))));
+    cache.put(petStoreId, petStoreData);
+    return petStoreData;
+  }
+
+  /*
+   * Method to read many pet stores by ID in one call, for GET /pet_store?ids=... Takes in the list
+   * of pet store IDs (at most MAX_MULTI_GET; repeated IDs are read once). The versions of the pet
+   * stores are read first: IDs without a row are missing, and a cached pet store is used when its
+   * version matches, as in retrievePetStoreByPetStoreId(). The rest are loaded with
+   * findFullPetStoresByIds(), which reads them with their customers and employees in two SQL
+   * statements however many there are, from the primary, and added to the cache when the
+   * transaction commits.
+   * 
+   * The pet stores are returned in the order of the requested IDs, with the IDs that do not exist
+   * listed in missingIds instead of throwing NoSuchElementException.
+   */
+
+  @Transactional(readOnly = true)
+  public PetStoreMultiGetResult retrievePetStoresByIds(List<Long> petStoreIds) {
+    Set<Long> requestedIds = new LinkedHashSet<>(petStoreIds);
+    requestedIds.remove(null);
+
+    if (requestedIds.isEmpty()) {
+      throw new IllegalArgumentException("At least one pet store ID is required");
+    }
+    if (requestedIds.size() > MAX_MULTI_GET) {
+      throw new IllegalArgumentException(
+          "At most " + MAX_MULTI_GET + " pet store IDs can be read at once");
+    }
+
+    Map<Long, Long> versions = new HashMap<>();
+
+    for (Object[] row : petStoreDao.findVersionsByPetStoreIds(requestedIds)) {
+      versions.put((Long) row[0], (Long) row[1]);
+    }
+
+    Cache cache = cacheManager.getCache(CacheConfig.PET_STORE_CACHE);
+    Map<Long, PetStoreData> found = new HashMap<>();
+    List<Long> uncachedIds = new ArrayList<>();
+
+    for (Map.Entry<Long, Long> version : versions.entrySet()) {
+      Long petStoreId = version.getKey();
+      PetStoreData cached = cache.get(petStoreId, PetStoreData.class);
+
+      if (Objects.nonNull(cached) && Objects.equals(cached.getVersion(), version.getValue())) {
+        found.put(petStoreId, cached);
+      } else {
+        uncachedIds.add(petStoreId);
+      }
+    }
+
+    if (!uncachedIds.isEmpty()) {
+      List<PetStoreData> loaded = loadForCache(() -> petStoreDao
+          .findFullPetStoresByIds(uncachedIds).stream().map(PetStoreData::new).toList());
+
+      for (PetStoreData petStoreData : loaded) {
+        cache.put(petStoreData.getPetStoreId(), petStoreData);
+        found.put(petStoreData.getPetStoreId(), petStoreData);
+      }
+    }
+
+    PetStoreMultiGetResult result = new PetStoreMultiGetResult();
+
+    for (Long petStoreId : requestedIds) {
+      PetStoreData petStoreData = found.get(petStoreId);
+
+      if (Objects.nonNull(petStoreData)) {
+        result.getPetStores().add(petStoreData);
+      } else {
+        result.getMissingIds().add(petStoreId);
+      }
+    }
+    return result;
+  }
+
+  /*
+   * loadForCache method runs a read whose result goes into the PetStoreData cache. When the
+   * current transaction reads from a read replica, the read runs in a new read-only transaction on
+   * the primary instead, so the cache is never filled from a replica that lags behind. Otherwise
+   * (routing off, or the client is in its read-your-writes window) it runs in the current
+   * transaction, which is already on the primary.
+   */
+  private <T> T loadForCache(Supplier<T> read) {
+    if (!ReadReplicaRoutingDataSource.isReplicaTransaction()) {
+      return read.get();
+    }
+
+    TransactionTemplate primaryRead = new TransactionTemplate(transactionManager);
+    primaryRead.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    primaryRead.setReadOnly(true);
+    return ReadReplicaRoutingDataSource.readFromPrimary(
+        () -> primaryRead.execute(status -> read.get()));
   }
 
   /*
    * Method to delete petStore associated with the petStore Id. This method take petStoreId as
-   * parameter, calls findPetStoreById() method to retrieve the PetStore entity. And calls the
-   * delete() method in the PetStoreDao interface, passing petStore entity.
+   * parameter and calls the purgePetStore() method in PetStorePurgeService, which deletes the
+   * employees and pet_store_customer rows with set-based statements in short chunked transactions
+   * and then deletes the pet store. It is not @Transactional because each chunk commits on its own.
+   * The cached copy of the pet store is evicted by the purge.
    */
   
-  @Transactional(readOnly = false)
   public void deletePetStoreById(Long petStoreId) {
-    PetStore petStore = findPetStoreById(petStoreId);
-    petStoreDao.delete(petStore);
+    petStorePurgeService.purgePetStore(petStoreId);
   }
   
 }
@@ -0,0 +1,246 @@
+package pet.store.service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import pet.store.controller.model.PetStoreStatsData;
+import pet.store.dao.PetStoreDao;
+import pet.store.dao.PetStoreJobTitleCountDao;
+import pet.store.dao.PetStoreStatsDao;
+import pet.store.entity.PetStoreJobTitleCount;
+import pet.store.entity.PetStoreStats;
+
+/*
+ * Service class that keeps the per pet store statistics: employee count, customer count and the
+ * number of employees per job title.
+ * 
+ * The counters are changed by the methods that add or change employees and customers, with
+ * single-statement upserts that run in the caller's transaction (Propagation.MANDATORY), so a
+ * counter can never be changed without the rows it counts. Those callers have already locked the
+ * pet store row, so updates to the counters of one pet store never interleave.
+ * 
+ * retrieveStats() reads the counters with two queries, whatever the number of employees and
+ * customers.
+ * 
+ * reconcile() runs every pet-store.stats.reconcile-interval. It compares the counters with GROUP BY
+ * counts of the employee and pet_store_customer tables, and recounts each pet store whose
+ * counters differ while holding the lock on its pet store row. It also creates the counters of pet
+ * stores that existed before the statistics were added.
+ */
+@Service
+@Slf4j
+public class PetStoreStatsService {
+
+  @Autowired
+  private PetStoreStatsDao petStoreStatsDao;
+
+  @Autowired
+  private PetStoreJobTitleCountDao petStoreJobTitleCountDao;
+
+  @Autowired
+  private PetStoreDao petStoreDao;
+
+  @Autowired
+  private TransactionTemplate transactionTemplate;
+
+  @Autowired
+  private MeterRegistry meterRegistry;
+
+  /*
+   * recordEmployeeChanges method takes petStoreId, the number of employees added and the change in
+   * employees per job title (a changed job title is -1 for the old title and +1 for the new one).
+   */
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void recordEmployeeChanges(Long petStoreId, long added,
+      Map<String, Long> jobTitleChanges) {
+    if (added != 0) {
+      petStoreStatsDao.addCounts(petStoreId, added, 0);
+    }
+
+    jobTitleChanges.forEach((jobTitle, delta) -> {
+      if (delta != 0) {
+        petStoreJobTitleCountDao.addCount(petStoreId, jobTitle, delta);
+      }
+    });
+  }
+
+  // Counts a new employee, or an employee whose job title changed from oldJobTitle.
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void recordEmployee(Long petStoreId, boolean added, String oldJobTitle,
+      String newJobTitle) {
+    Map<String, Long> jobTitleChanges = new HashMap<>();
+    addJobTitleChange(jobTitleChanges, oldJobTitle, newJobTitle);
+    recordEmployeeChanges(petStoreId, added ? 1 : 0, jobTitleChanges);
+  }
+
+  /*
+   * addJobTitleChange method adds a job title change to the map used by recordEmployeeChanges().
+   * oldJobTitle is null for a new employee. Nothing is added when the job title did not change.
+   */
+  public static void addJobTitleChange(Map<String, Long> jobTitleChanges, String oldJobTitle,
+      String newJobTitle) {
+    if (Objects.equals(oldJobTitle, newJobTitle)) {
+      return;
+    }
+    if (Objects.nonNull(oldJobTitle)) {
+      jobTitleChanges.merge(oldJobTitle, -1L, Long::sum);
+    }
+    if (Objects.nonNull(newJobTitle)) {
+      jobTitleChanges.merge(newJobTitle, 1L, Long::sum);
+    }
+  }
+
+  // Adds delta (negative when customers were removed) to the customer count.
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void recordCustomers(Long petStoreId, long delta) {
+    if (delta != 0) {
+      petStoreStatsDao.addCounts(petStoreId, 0, delta);
+    }
+  }
+
+  // Removes the counters of a deleted pet store.
+  @Transactional(propagation = Propagation.MANDATORY)
+  public void deleteStats(Long petStoreId) {
+    petStoreStatsDao.deleteByPetStoreId(petStoreId);
+    petStoreJobTitleCountDao.deleteByPetStoreId(petStoreId);
+  }
+
+  /*
+   * retrieveStats method returns the statistics of every pet store in ID order. One query reads
+   * the pet stores with their counters and one reads the job title counters.
+   */
+  @Transactional(readOnly = true)
+  public List<PetStoreStatsData> retrieveStats() {
+    List<PetStoreStatsData> stats = petStoreStatsDao.findAllStats();
+    Map<Long, PetStoreStatsData> statsById = new HashMap<>();
+
+    for (PetStoreStatsData petStoreStats : stats) {
+      statsById.put(petStoreStats.getPetStoreId(), petStoreStats);
+    }
+
+    for (PetStoreJobTitleCount count : petStoreJobTitleCountDao.findAllNonZero()) {
+      PetStoreStatsData petStoreStats = statsById.get(count.getPetStoreId());
+
+      if (Objects.nonNull(petStoreStats)) {
+        petStoreStats.getJobTitles().put(count.getJobTitle(), count.getEmployeeCount());
+      }
+    }
+    return stats;
+  }
+
+  /*
+   * reconcile method finds the pet stores whose counters differ from the GROUP BY counts and
+   * repairs each of them in its own transaction. Returns the number of pet stores repaired.
+   */
+  @Scheduled(fixedDelayString = "${pet-store.stats.reconcile-interval:1h}",
+      initialDelayString = "${pet-store.stats.reconcile-initial-delay:1m}")
+  public int reconcile() {
+    Set<Long> drifted = transactionTemplate.execute(status -> findDriftedPetStores());
+    int repaired = 0;
+
+    for (Long petStoreId : drifted) {
+      transactionTemplate.executeWithoutResult(status -> repair(petStoreId));
+      repaired++;
+    }
+
+    if (repaired > 0) {
+      log.warn("Repaired the statistics of {} pet stores", repaired);
+      meterRegistry.counter("pet.store.stats.repaired").increment(repaired);
+    }
+    return repaired;
+  }
+
+  private Set<Long> findDriftedPetStores() {
+    Map<Long, long[]> actual = new HashMap<>();
+    Map<Long, long[]> stored = new HashMap<>();
+
+    for (Object[] row : petStoreStatsDao.countEmployeesByPetStore()) {
+      actual.computeIfAbsent(toLong(row[0]), id -> new long[2])[0] = toLong(row[1]);
+    }
+    for (Object[] row : petStoreStatsDao.countCustomersByPetStore()) {
+      actual.computeIfAbsent(toLong(row[0]), id -> new long[2])[1] = toLong(row[1]);
+    }
+    for (PetStoreStats stats : petStoreStatsDao.findAll()) {
+      stored.put(stats.getPetStoreId(),
+          new long[] {stats.getEmployeeCount(), stats.getCustomerCount()});
+    }
+
+    Map<List<Object>, Long> actualJobTitles = new HashMap<>();
+    Map<List<Object>, Long> storedJobTitles = new HashMap<>();
+
+    for (Object[] row : petStoreJobTitleCountDao.countJobTitlesByPetStore()) {
+      actualJobTitles.put(List.of(toLong(row[0]), row[1]), toLong(row[2]));
+    }
+    for (PetStoreJobTitleCount count : petStoreJobTitleCountDao.findAll()) {
+      if (count.getEmployeeCount() != 0) {
+        storedJobTitles.put(List.of(count.getPetStoreId(), count.getJobTitle()),
+            count.getEmployeeCount());
+      }
+    }
+
+    Set<Long> drifted = new TreeSet<>();
+    Set<Long> petStoreIds = new HashSet<>(actual.keySet());
+    petStoreIds.addAll(stored.keySet());
+
+    for (Long petStoreId : petStoreIds) {
+      long[] expected = actual.getOrDefault(petStoreId, new long[2]);
+      long[] current = stored.getOrDefault(petStoreId, new long[2]);
+
+      if (expected[0] != current[0] || expected[1] != current[1]
+          || !stored.containsKey(petStoreId)) {
+        drifted.add(petStoreId);
+      }
+    }
+
+    Set<List<Object>> jobTitleKeys = new HashSet<>(actualJobTitles.keySet());
+    jobTitleKeys.addAll(storedJobTitles.keySet());
+
+    for (List<Object> key : jobTitleKeys) {
+      if (!Objects.equals(actualJobTitles.get(key), storedJobTitles.get(key))) {
+        drifted.add((Long) key.get(0));
+      }
+    }
+    return drifted;
+  }
+
+  /*
+   * repair method locks the pet store row, so no employee or customer of the pet store can change
+   * meanwhile, and replaces its counters with fresh counts. The counters of a pet store that no
+   * longer exists are removed.
+   */
+  private void repair(Long petStoreId) {
+    boolean exists = petStoreDao.findAndLockByPetStoreId(petStoreId).isPresent();
+
+    petStoreStatsDao.deleteByPetStoreId(petStoreId);
+    petStoreJobTitleCountDao.deleteByPetStoreId(petStoreId);
+
+    if (!exists) {
+      return;
+    }
+
+    petStoreStatsDao.save(new PetStoreStats(petStoreId,
+        petStoreStatsDao.countEmployees(petStoreId), petStoreStatsDao.countCustomers(petStoreId)));
+
+    for (Object[] row : petStoreJobTitleCountDao.countJobTitles(petStoreId)) {
+      petStoreJobTitleCountDao
+          .save(new PetStoreJobTitleCount(petStoreId, (String) row[0], toLong(row[1])));
+    }
+  }
+
+  private static long toLong(Object value) {
+    return ((Number) value).longValue();
+  }
+
+}
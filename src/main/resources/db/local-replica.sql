@@ -0,0 +1,38 @@
+-- Schema of the local read replica (application-local.yaml), run by the INIT setting of the
+-- replica URL on every new connection. The replica is its own in-memory database; each table is a
+-- read-only H2 linked table over the same table of the primary database, so the replica has the
+-- primary's schema and data (without lag) and a write sent to it fails instead of changing the
+-- primary. The tables must exist on the primary, which they do once Hibernate (create-drop) or
+-- Flyway has run at startup, before the first read-only transaction.
+
+CREATE LINKED TABLE IF NOT EXISTS pet_store('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'pet_store') READONLY;
+
+CREATE LINKED TABLE IF NOT EXISTS customer('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'customer') READONLY;
+
+CREATE LINKED TABLE IF NOT EXISTS pet_store_customer('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'pet_store_customer') READONLY;
+
+CREATE LINKED TABLE IF NOT EXISTS employee('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'employee') READONLY;
+
+CREATE LINKED TABLE IF NOT EXISTS pet_store_stats('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'pet_store_stats') READONLY;
+
+CREATE LINKED TABLE IF NOT EXISTS pet_store_job_title_count('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'pet_store_job_title_count') READONLY;
+
+CREATE LINKED TABLE IF NOT EXISTS bulk_load_job('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'bulk_load_job') READONLY;
+
+CREATE LINKED TABLE IF NOT EXISTS bulk_load_chunk('org.h2.Driver',
+  'jdbc:h2:mem:pet_store;DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE',
+  'sa', '', 'bulk_load_chunk') READONLY;
@@ -0,0 +1,75 @@
+-- Baseline schema, as it was created by ddl-auto: update. A database created that way is
+-- baselined at this version (spring.flyway.baseline-on-migrate), so this script only runs on an
+-- empty database.
+
+CREATE TABLE pet_store (
+  pet_store_id bigint NOT NULL AUTO_INCREMENT,
+  pet_store_name varchar(255),
+  pet_store_address varchar(255),
+  pet_store_city varchar(255),
+  pet_store_state varchar(255),
+  pet_store_zip varchar(255),
+  pet_store_phone varchar(255),
+  version bigint NOT NULL,
+  PRIMARY KEY (pet_store_id)
+) ENGINE=InnoDB;
+
+CREATE TABLE customer (
+  customer_id bigint NOT NULL AUTO_INCREMENT,
+  customer_first_name varchar(255),
+  customer_last_name varchar(255),
+  customer_email varchar(255),
+  PRIMARY KEY (customer_id)
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_customer_email ON customer (customer_email);
+CREATE INDEX idx_customer_name ON customer (customer_last_name, customer_first_name);
+
+CREATE TABLE pet_store_customer (
+  pet_store_id bigint NOT NULL,
+  customer_id bigint NOT NULL,
+  PRIMARY KEY (pet_store_id, customer_id),
+  CONSTRAINT fk_pet_store_customer_pet_store FOREIGN KEY (pet_store_id)
+    REFERENCES pet_store (pet_store_id),
+  CONSTRAINT fk_pet_store_customer_customer FOREIGN KEY (customer_id)
+    REFERENCES customer (customer_id)
+) ENGINE=InnoDB;
+
+-- Employee IDs come from employee_seq. MySQL has no sequences, so Hibernate keeps the next value
+-- in a one row table.
+CREATE TABLE employee_seq (
+  next_val bigint
+) ENGINE=InnoDB;
+
+INSERT INTO employee_seq VALUES (1);
+
+CREATE TABLE employee (
+  employee_id bigint NOT NULL,
+  employee_first_name varchar(255),
+  employee_last_name varchar(255),
+  employee_phone varchar(255),
+  employee_job_title varchar(255),
+  pet_store_id bigint,
+  PRIMARY KEY (employee_id),
+  CONSTRAINT fk_employee_pet_store FOREIGN KEY (pet_store_id) REFERENCES pet_store (pet_store_id)
+) ENGINE=InnoDB;
+
+CREATE INDEX idx_employee_name ON employee (employee_last_name, employee_first_name);
+CREATE INDEX idx_employee_job_title ON employee (employee_job_title);
+CREATE INDEX idx_employee_store_name ON employee (pet_store_id, employee_last_name,
+  employee_first_name);
+CREATE INDEX idx_employee_store_job_title ON employee (pet_store_id, employee_job_title);
+
+CREATE TABLE pet_store_stats (
+  pet_store_id bigint NOT NULL,
+  employee_count bigint NOT NULL,
+  customer_count bigint NOT NULL,
+  PRIMARY KEY (pet_store_id)
+) ENGINE=InnoDB;
+
+CREATE TABLE pet_store_job_title_count (
+  pet_store_id bigint NOT NULL,
+  job_title varchar(255) NOT NULL,
+  employee_count bigint NOT NULL,
+  PRIMARY KEY (pet_store_id, job_title)
+) ENGINE=InnoDB;
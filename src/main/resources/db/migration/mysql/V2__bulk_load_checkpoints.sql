@@ -0,0 +1,25 @@
+-- Checkpoints of the bulk loader (pet.store.bulkload): one row per loaded file and one row per
+-- chunk of the file loaded in each pass. ddl-auto: update may have created the tables before
+-- Flyway ran on the database, so they are only created when missing.
+
+CREATE TABLE IF NOT EXISTS bulk_load_job (
+  job_id varchar(255) NOT NULL,
+  file_name varchar(255),
+  file_size bigint NOT NULL,
+  chunk_size bigint NOT NULL,
+  chunk_count integer NOT NULL,
+  pet_store_id_offset bigint NOT NULL,
+  customer_id_offset bigint NOT NULL,
+  started_at datetime(6),
+  finished_at datetime(6),
+  PRIMARY KEY (job_id)
+) ENGINE=InnoDB;
+
+CREATE TABLE IF NOT EXISTS bulk_load_chunk (
+  job_id varchar(255) NOT NULL,
+  pass varchar(20) NOT NULL,
+  chunk_index integer NOT NULL,
+  rows_written bigint NOT NULL,
+  finished_at datetime(6),
+  PRIMARY KEY (job_id, pass, chunk_index)
+) ENGINE=InnoDB;
@@ -0,0 +1,15 @@
+-- Moves employee_seq past the existing employees. A database that was created by ddl-auto: update
+-- is baselined at version 1, so the employee_seq row of V1 is never inserted there: the table is
+-- missing (employees from before the bulk endpoint) or was started at 1 by Hibernate. Hibernate
+-- hands out the IDs next_val - 49 to next_val for each value it reads (allocationSize 50), so
+-- next_val has to be at least max(employee_id) + 50. Running it again changes nothing.
+
+CREATE TABLE IF NOT EXISTS employee_seq (
+  next_val bigint
+) ENGINE=InnoDB;
+
+INSERT INTO employee_seq (next_val)
+SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM employee_seq);
+
+UPDATE employee_seq
+SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(employee_id), 0) + 50 FROM employee));
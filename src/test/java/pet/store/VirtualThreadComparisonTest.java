@@ -0,0 +1,167 @@
+package pet.store;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Compares the platform thread and virtual thread execution modes under the same load. The
+ * application is started once in each mode on a random port, against the database configured in
+ * application.yaml. A fixed number of clients then read a pet store (nine requests in ten) and
+ * create pet stores (one in ten) as fast as they can, first for a warmup that is not counted and
+ * then for the measured run. Throughput, p50 and p99 latency, 503 rejections from the admission
+ * limit and other errors of both modes are printed side by side.
+ * 
+ * The comparison takes a while and needs the database, so it only runs when asked for:
+ * mvn test -Dtest=VirtualThreadComparisonTest -Dvirtual-thread-comparison=true
+ * 
+ * Add -Dcomparison.clients=200 and -Dcomparison.seconds=30 to change the load. Virtual threads
+ * need a Java 21 or later runtime; on Java 17 both runs use platform threads.
+ */
+@EnabledIfSystemProperty(named = "virtual-thread-comparison", matches = "true")
+class VirtualThreadComparisonTest {
+
+  private static final int CLIENTS = Integer.getInteger("comparison.clients", 200);
+  private static final long SECONDS = Long.getLong("comparison.seconds", 30);
+  private static final long WARMUP_SECONDS = 10;
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  private record Result(long requests, long rejected, long errors, double throughput,
+      long p50Micros, long p99Micros) {}
+
+  @Test
+  void compareExecutionModes() throws Exception {
+    Result platform = run(false);
+    Result virtual = run(true);
+
+    System.out.printf("%-9s %10s %10s %10s %10s %10s%n", "mode", "req/s", "p50 us", "p99 us",
+        "rejected", "errors");
+    print("platform", platform);
+    print("virtual", virtual);
+
+    assertThat(platform.requests()).isPositive();
+    assertThat(virtual.requests()).isPositive();
+  }
+
+  private Result run(boolean virtualThreads) throws Exception {
+    try (ConfigurableApplicationContext context =
+        new SpringApplicationBuilder(PetStoreApplication.class)
+            .properties("server.port=0", "logging.level.root=WARN",
+                "pet-store.admission.client-rate=0",
+                "spring.threads.virtual.enabled=" + virtualThreads)
+            .run()) {
+      int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+      URI petStores = URI.create("http://localhost:" + port + "/pet_store");
+      HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+      URI petStore = petStores.resolve("/pet_store/" + createPetStore(client, petStores, 0));
+
+      drive(client, petStores, petStore, WARMUP_SECONDS);
+      return drive(client, petStores, petStore, SECONDS);
+    }
+  }
+
+  /*
+   * drive method runs the clients for the given number of seconds and returns what they measured.
+   */
+  private Result drive(HttpClient client, URI petStores, URI petStore, long seconds)
+      throws Exception {
+    ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+    long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+    AtomicLong rejected = new AtomicLong();
+    AtomicLong errors = new AtomicLong();
+    List<Future<List<Long>>> futures = new ArrayList<>();
+
+    for (int c = 0; c < CLIENTS; c++) {
+      int clientNumber = c;
+
+      futures.add(clients.submit(() -> {
+        List<Long> latencies = new ArrayList<>();
+
+        for (int i = 0; System.nanoTime() < end; i++) {
+          HttpRequest request = i % 10 == 9
+              ? HttpRequest.newBuilder(petStores).header("Content-Type", "application/json")
+                  .POST(BodyPublishers.ofString(petStoreJson(clientNumber * 1_000_000L + i)))
+                  .build()
+              : HttpRequest.newBuilder(petStore).GET().build();
+          long start = System.nanoTime();
+
+          try {
+            int status = client.send(request, BodyHandlers.discarding()).statusCode();
+
+            if (status == 503) {
+              rejected.incrementAndGet();
+            } else if (status >= 400) {
+              errors.incrementAndGet();
+            }
+          } catch (IOException e) {
+            errors.incrementAndGet();
+          }
+          latencies.add(System.nanoTime() - start);
+        }
+        return latencies;
+      }));
+    }
+
+    List<Long> latencies = new ArrayList<>();
+
+    for (Future<List<Long>> future : futures) {
+      latencies.addAll(future.get());
+    }
+    clients.shutdown();
+    Collections.sort(latencies);
+
+    return new Result(latencies.size(), rejected.get(), errors.get(),
+        latencies.size() / (double) seconds, percentile(latencies, 0.5) / 1000,
+        percentile(latencies, 0.99) / 1000);
+  }
+
+  private static long percentile(List<Long> sorted, double quantile) {
+    if (sorted.isEmpty()) {
+      return 0;
+    }
+    return sorted.get((int) Math.max(0, Math.ceil(quantile * sorted.size()) - 1));
+  }
+
+  private static long createPetStore(HttpClient client, URI petStores, long number)
+      throws IOException, InterruptedException {
+    HttpRequest request = HttpRequest.newBuilder(petStores)
+        .header("Content-Type", "application/json")
+        .POST(BodyPublishers.ofString(petStoreJson(number))).build();
+    HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
+
+    assertThat(response.statusCode()).isLessThan(400);
+    return OBJECT_MAPPER.readTree(response.body()).get("petStoreId").asLong();
+  }
+
+  private static String petStoreJson(long number) {
+    return "{\"petStoreName\":\"Comparison Store " + number + "\",\"petStoreAddress\":\""
+        + number + " Main St\",\"petStoreCity\":\"Denver\",\"petStoreState\":\"CO\","
+        + "\"petStoreZip\":\"80202\",\"petStorePhone\":\"555-0100\"}";
+  }
+
+  private static void print(String mode, Result result) {
+    System.out.printf("%-9s %10.0f %10d %10d %10d %10d%n", mode, result.throughput(),
+        result.p50Micros(), result.p99Micros(), result.rejected(), result.errors());
+  }
+
+}
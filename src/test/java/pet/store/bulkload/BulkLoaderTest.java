@@ -0,0 +1,156 @@
+package pet.store.bulkload;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.when;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import pet.store.config.CacheConfig;
+import pet.store.entity.BulkLoadChunk;
+import pet.store.service.PetStoreStatsService;
+
+/*
+ * Checks that the bulk loader merges customers by email (trimmed, in lower case, across chunks and
+ * with the customers already in the database) and that a job that failed part of the way through
+ * resumes with the chunks it had not loaded. The chunk size is small enough for every line to get
+ * a chunk of its own, so the passes run on several chunks in parallel.
+ * 
+ * The loader commits its chunks on its own threads, so the tests run outside a test transaction
+ * and clear the tables themselves. H2 runs in MySQL mode, as in the local profile, for the ON
+ * DUPLICATE KEY clause of the membership inserts. The files have no employee lines, since
+ * reserving employee IDs needs MySQL.
+ */
+@DataJpaTest(properties = {"spring.flyway.enabled=false",
+    "spring.datasource.url=jdbc:h2:mem:bulk_load;DB_CLOSE_DELAY=-1;MODE=MySQL;"
+        + "DATABASE_TO_LOWER=TRUE",
+    "pet-store.bulk-load.chunk-size=100B", "pet-store.bulk-load.threads=2"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({BulkLoader.class, BulkLoadWriter.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BulkLoaderTest {
+
+  @Autowired
+  private BulkLoader bulkLoader;
+
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  @MockBean
+  private PetStoreStatsService petStoreStatsService;
+
+  @MockBean
+  private CacheManager cacheManager;
+
+  @TempDir
+  private Path tempDir;
+
+  @BeforeEach
+  void setUp() {
+    for (String table : List.of("pet_store_customer", "customer", "pet_store", "bulk_load_chunk",
+        "bulk_load_job")) {
+      jdbcTemplate.update("DELETE FROM " + table);
+    }
+    when(cacheManager.getCache(CacheConfig.PET_STORE_CACHE))
+        .thenReturn(new ConcurrentMapCache(CacheConfig.PET_STORE_CACHE));
+  }
+
+  @Test
+  void loadMergesCustomersWithTheSameEmail() throws Exception {
+    jdbcTemplate.update("INSERT INTO customer (customer_id, customer_first_name,"
+        + " customer_last_name, customer_email) VALUES (1, 'Bob', 'Old', 'bob@example.com')");
+    Path file = write("merge.ndjson",
+        petStore(1, "North Store"),
+        petStore(2, "South Store"),
+        customer(3, "Ann", " Ann@Example.com ", 1),
+        customer(1, "Ann", "ann@example.com", 2),
+        customer(2, "Ann", "ANN@example.com", 1),
+        customer(4, "Bob", "BOB@example.com", 2),
+        customer(5, "Cid", null, 1),
+        customer(6, "Cid", null, 1));
+
+    bulkLoader.load(file);
+
+    // The customer ID offset is 1, the ID of Bob; the pet store ID offset is 0.
+    assertThat(jdbcTemplate.query(
+        "SELECT customer_id, customer_email FROM customer ORDER BY customer_id",
+        (rs, rowNum) -> rs.getLong(1) + " " + rs.getString(2)))
+        .containsExactly("1 bob@example.com", "2 ann@example.com", "6 null", "7 null");
+    assertThat(memberships()).containsExactly("1 2", "1 6", "1 7", "2 1", "2 2");
+  }
+
+  @Test
+  void loadResumesWithTheChunksNotLoaded() throws Exception {
+    Path file = write("resume.ndjson",
+        petStore(1, "North Store"),
+        customer(1, "Ann", "ann@example.com", 1),
+        customer(3, "Ann", "ANN@example.com", 1),
+        customer(2, "Bob", "bob@example.com", 9));
+
+    // Pet store 9 is not in the file, so the last membership chunk, Bob's, fails.
+    assertThatThrownBy(() -> bulkLoader.load(file))
+        .isInstanceOf(DataIntegrityViolationException.class);
+    assertThat(chunksLoaded(BulkLoadChunk.Pass.CUSTOMERS)).isEqualTo(4);
+    assertThat(chunksLoaded(BulkLoadChunk.Pass.MEMBERSHIPS)).isEqualTo(3);
+
+    jdbcTemplate.update("INSERT INTO pet_store (pet_store_id, pet_store_name, version)"
+        + " VALUES (9, 'Late Store', 0)");
+    BulkLoadReport report = bulkLoader.load(file);
+
+    // Loading the pet stores or customers again would fail on their primary keys.
+    assertThat(report.rows(BulkLoadChunk.Pass.PET_STORES.name())).isZero();
+    assertThat(report.rows(BulkLoadChunk.Pass.CUSTOMERS.name())).isZero();
+    assertThat(report.rows(BulkLoadChunk.Pass.MEMBERSHIPS.name())).isEqualTo(1);
+    assertThat(chunksLoaded(BulkLoadChunk.Pass.MEMBERSHIPS)).isEqualTo(4);
+    assertThat(jdbcTemplate.queryForList("SELECT customer_id FROM customer ORDER BY customer_id",
+        Long.class)).containsExactly(1L, 2L);
+    assertThat(memberships()).containsExactly("1 1", "9 2");
+  }
+
+  private Path write(String fileName, String... lines) throws Exception {
+    return Files.write(tempDir.resolve(fileName), List.of(lines));
+  }
+
+  // Returns the pet_store_customer rows as "petStoreId customerId".
+  private List<String> memberships() {
+    return jdbcTemplate.query("SELECT pet_store_id, customer_id FROM pet_store_customer"
+        + " ORDER BY pet_store_id, customer_id",
+        (rs, rowNum) -> rs.getLong(1) + " " + rs.getLong(2));
+  }
+
+  private int chunksLoaded(BulkLoadChunk.Pass pass) {
+    return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM bulk_load_chunk WHERE pass = ?",
+        Integer.class, pass.name());
+  }
+
+  private static String petStore(long petStoreId, String name) {
+    return "{\"type\":\"pet_store\",\"petStoreId\":" + petStoreId + ",\"petStoreName\":\"" + name
+        + "\",\"petStoreCity\":\"Denver\",\"petStoreState\":\"CO\"}";
+  }
+
+  private static String customer(long customerId, String firstName, String email,
+      long petStoreId) {
+    return "{\"type\":\"customer\",\"customerId\":" + customerId + ",\"customerFirstName\":\""
+        + firstName + "\",\"customerLastName\":\"Smith\",\"customerEmail\":"
+        + (email == null ? "null" : "\"" + email + "\"") + ",\"petStoreIds\":[" + petStoreId
+        + "]}";
+  }
+
+}
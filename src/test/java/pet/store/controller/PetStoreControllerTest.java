@@ -0,0 +1,109 @@
+package pet.store.controller;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import pet.store.config.AdmissionControlFilter;
+import pet.store.config.RequestSqlMetricsFilter;
+import pet.store.controller.model.PetStoreData;
+import pet.store.service.PetStoreExportService;
+import pet.store.service.PetStorePurgeService;
+import pet.store.service.PetStoreService;
+import pet.store.service.PetStoreStatsService;
+
+/*
+ * Checks the conditional requests of the pet store endpoints. If-Match on PUT and PATCH uses the
+ * strong comparison: a stale or weak ETag gets 412 precondition failed and the pet store is not
+ * changed. If-None-Match on GET uses the weak comparison, so W/"5" still matches version 5. The
+ * service is mocked, and the admission and SQL metrics filters are left out.
+ */
+@WebMvcTest(controllers = PetStoreController.class,
+    excludeFilters = @ComponentScan.Filter(type = FilterType.ASSIGNABLE_TYPE,
+        classes = {AdmissionControlFilter.class, RequestSqlMetricsFilter.class}))
+class PetStoreControllerTest {
+
+  private static final String PET_STORE_JSON = "{\"petStoreName\":\"Updated Store\"}";
+
+  @Autowired
+  private MockMvc mockMvc;
+
+  @MockBean
+  private PetStoreService petStoreService;
+
+  @MockBean
+  private PetStoreExportService petStoreExportService;
+
+  @MockBean
+  private PetStorePurgeService petStorePurgeService;
+
+  @MockBean
+  private PetStoreStatsService petStoreStatsService;
+
+  @Test
+  void putWithMatchingETagUpdatesAndReturnsTheNewETag() throws Exception {
+    PetStoreData updated = new PetStoreData();
+    updated.setPetStoreId(1L);
+    updated.setVersion(4L);
+    when(petStoreService.savePetStore(any(), eq(3L))).thenReturn(updated);
+
+    mockMvc.perform(put("/pet_store/1").header(HttpHeaders.IF_MATCH, "\"3\"")
+        .contentType(MediaType.APPLICATION_JSON).content(PET_STORE_JSON))
+        .andExpect(status().isOk()).andExpect(header().string(HttpHeaders.ETAG, "\"4\""));
+  }
+
+  @Test
+  void putWithStaleETagGets412() throws Exception {
+    when(petStoreService.savePetStore(any(), eq(2L))).thenThrow(
+        new OptimisticLockingFailureException("Pet Store with ID = 1 has version 3, not 2"));
+
+    mockMvc.perform(put("/pet_store/1").header(HttpHeaders.IF_MATCH, "\"2\"")
+        .contentType(MediaType.APPLICATION_JSON).content(PET_STORE_JSON))
+        .andExpect(status().isPreconditionFailed());
+  }
+
+  @Test
+  void putWithWeakETagGets412WithoutUpdating() throws Exception {
+    mockMvc.perform(put("/pet_store/1").header(HttpHeaders.IF_MATCH, "W/\"3\"")
+        .contentType(MediaType.APPLICATION_JSON).content(PET_STORE_JSON))
+        .andExpect(status().isPreconditionFailed());
+
+    verify(petStoreService, never()).savePetStore(any(), any());
+  }
+
+  @Test
+  void patchWithWeakETagGets412WithoutUpdating() throws Exception {
+    mockMvc.perform(patch("/pet_store/1").header(HttpHeaders.IF_MATCH, "W/\"3\"")
+        .contentType("application/merge-patch+json").content(PET_STORE_JSON))
+        .andExpect(status().isPreconditionFailed());
+
+    verify(petStoreService, never()).patchPetStore(any(), any(), any());
+  }
+
+  @Test
+  void getWithWeakIfNoneMatchOfTheCurrentVersionGets304() throws Exception {
+    when(petStoreService.retrievePetStoreVersion(1L)).thenReturn(5L);
+
+    mockMvc.perform(get("/pet_store/1").header(HttpHeaders.IF_NONE_MATCH, "W/\"5\""))
+        .andExpect(status().isNotModified());
+
+    verify(petStoreService, never()).retrievePetStoreByPetStoreId(any());
+  }
+
+}
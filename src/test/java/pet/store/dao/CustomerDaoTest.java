@@ -0,0 +1,136 @@
+package pet.store.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import pet.store.controller.model.PetStoreCustomer;
+import pet.store.entity.Customer;
+import pet.store.entity.PetStore;
+
+/*
+ * Checks the keyset paging of the customer search. Walking every page with the key of the last
+ * customer of the previous page must return each matching customer exactly once, in (last name,
+ * first name, customer ID) order, also when several customers share a name or have no first name.
+ * Runs on an embedded H2 database with the schema created by Hibernate.
+ */
+@DataJpaTest(properties = "spring.flyway.enabled=false")
+class CustomerDaoTest {
+
+  private static final int PAGE_SIZE = 2;
+
+  @Autowired
+  private CustomerDao customerDao;
+
+  @Autowired
+  private TestEntityManager testEntityManager;
+
+  private PetStore petStore;
+  private final List<Customer> customers = new ArrayList<>();
+
+  @BeforeEach
+  void createCustomers() {
+    petStore = new PetStore();
+    petStore.setPetStoreName("Search Store");
+    testEntityManager.persist(petStore);
+
+    String[][] names = {{"Smith", "Bob"}, {"Smith", null}, {"Smith", "Ann"}, {"Smith", "Ann"},
+        {"Smithers", "Cal"}, {"Smith", null}, {"Jones", "Ann"}, {"Smith", "Bob"}};
+
+    for (int i = 0; i < names.length; i++) {
+      Customer customer = new Customer();
+      customer.setCustomerLastName(names[i][0]);
+      customer.setCustomerFirstName(names[i][1]);
+      customer.setCustomerEmail(i % 2 == 0 ? "shared@example.com" : "own" + i + "@example.com");
+      testEntityManager.persist(customer);
+      customers.add(customer);
+
+      if (i % 2 == 0) {
+        petStore.getCustomers().add(customer);
+      }
+    }
+
+    testEntityManager.flush();
+    testEntityManager.clear();
+  }
+
+  @Test
+  void searchByNamePagesThroughEveryMatchInIndexOrder() {
+    List<Long> expected = customers.stream()
+        .filter(customer -> customer.getCustomerLastName().startsWith("Smith"))
+        .sorted(Comparator.comparing(Customer::getCustomerLastName)
+            .thenComparing(Customer::getCustomerFirstName,
+                Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Customer::getCustomerId))
+        .map(Customer::getCustomerId).toList();
+
+    assertThat(searchAllByName(null)).isEqualTo(expected);
+  }
+
+  @Test
+  void searchByNameOnlyReturnsCustomersOfThePetStore() {
+    List<Long> expected = customers.stream()
+        .filter(customer -> customer.getCustomerLastName().startsWith("Smith"))
+        .filter(customer -> customer.getCustomerEmail().equals("shared@example.com"))
+        .sorted(Comparator.comparing(Customer::getCustomerLastName)
+            .thenComparing(Customer::getCustomerFirstName,
+                Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Customer::getCustomerId))
+        .map(Customer::getCustomerId).toList();
+
+    assertThat(searchAllByName(petStore.getPetStoreId())).isEqualTo(expected);
+  }
+
+  @Test
+  void searchByEmailPagesByCustomerId() {
+    List<Long> expected = customers.stream()
+        .filter(customer -> customer.getCustomerEmail().equals("shared@example.com"))
+        .map(Customer::getCustomerId).sorted().toList();
+    List<Long> found = new ArrayList<>();
+    long afterId = 0;
+    List<PetStoreCustomer> page;
+
+    do {
+      page = customerDao.searchByEmail("shared@example.com", null, afterId,
+          PageRequest.of(0, PAGE_SIZE));
+      page.forEach(customer -> found.add(customer.getCustomerId()));
+
+      if (!page.isEmpty()) {
+        afterId = page.get(page.size() - 1).getCustomerId();
+      }
+    } while (page.size() == PAGE_SIZE);
+
+    assertThat(found).isEqualTo(expected);
+  }
+
+  /*
+   * Reads every page of the "Smith" name search, starting each page after the full key of the
+   * last customer of the page before, the way the service builds its cursor.
+   */
+  private List<Long> searchAllByName(Long petStoreId) {
+    List<Long> found = new ArrayList<>();
+    PetStoreCustomer last = null;
+    List<PetStoreCustomer> page;
+
+    do {
+      page = customerDao.searchByName("Smith%", null, petStoreId,
+          last == null ? null : last.getCustomerLastName(),
+          last == null ? null : last.getCustomerFirstName(),
+          last == null ? 0L : last.getCustomerId(), PageRequest.of(0, PAGE_SIZE));
+      page.forEach(customer -> found.add(customer.getCustomerId()));
+
+      if (!page.isEmpty()) {
+        last = page.get(page.size() - 1);
+      }
+    } while (page.size() == PAGE_SIZE);
+
+    return found;
+  }
+
+}
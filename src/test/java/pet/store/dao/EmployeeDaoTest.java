@@ -0,0 +1,122 @@
+package pet.store.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import pet.store.controller.model.PetStoreEmployee;
+import pet.store.entity.Employee;
+import pet.store.entity.PetStore;
+
+/*
+ * Checks the keyset paging of the employee searches, by name within one pet store and by job
+ * title across pet stores. Every matching employee must come back exactly once, in index order,
+ * when each page starts after the key of the last employee of the page before. Runs on an
+ * embedded H2 database with the schema created by Hibernate.
+ */
+@DataJpaTest(properties = "spring.flyway.enabled=false")
+class EmployeeDaoTest {
+
+  private static final int PAGE_SIZE = 2;
+
+  @Autowired
+  private EmployeeDao employeeDao;
+
+  @Autowired
+  private TestEntityManager testEntityManager;
+
+  private PetStore firstStore;
+  private final List<Employee> employees = new ArrayList<>();
+
+  @BeforeEach
+  void createEmployees() {
+    firstStore = persistPetStore("First Store");
+    PetStore secondStore = persistPetStore("Second Store");
+
+    String[][] employeeData = {{"Lee", "Amy", "Groomer"}, {"Lee", null, "Cashier"},
+        {"Lee", "Amy", "Groomer"}, {"Leeds", "Bo", "Manager"}, {"Lee", null, "Groomer"},
+        {"Lee", "Cy", "Cashier"}, {"Park", "Amy", "Groomer"}};
+
+    for (int i = 0; i < employeeData.length; i++) {
+      for (PetStore petStore : List.of(firstStore, secondStore)) {
+        Employee employee = new Employee();
+        employee.setEmployeeLastName(employeeData[i][0]);
+        employee.setEmployeeFirstName(employeeData[i][1]);
+        employee.setEmployeeJobTitle(employeeData[i][2]);
+        employee.setPetStore(petStore);
+        testEntityManager.persist(employee);
+        employees.add(employee);
+      }
+    }
+
+    testEntityManager.flush();
+    testEntityManager.clear();
+  }
+
+  @Test
+  void searchByNamePagesThroughOnePetStoreInIndexOrder() {
+    List<Long> expected = employees.stream()
+        .filter(employee -> employee.getPetStore() == firstStore)
+        .filter(employee -> employee.getEmployeeLastName().startsWith("Lee"))
+        .sorted(Comparator.comparing(Employee::getEmployeeLastName)
+            .thenComparing(Employee::getEmployeeFirstName,
+                Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(Employee::getEmployeeId))
+        .map(Employee::getEmployeeId).toList();
+    List<Long> found = new ArrayList<>();
+    PetStoreEmployee last = null;
+    List<PetStoreEmployee> page;
+
+    do {
+      page = employeeDao.searchByName("Lee%", null, null, firstStore.getPetStoreId(),
+          last == null ? null : last.getEmployeeLastName(),
+          last == null ? null : last.getEmployeeFirstName(),
+          last == null ? 0L : last.getEmployeeId(), PageRequest.of(0, PAGE_SIZE));
+      page.forEach(employee -> found.add(employee.getEmployeeId()));
+
+      if (!page.isEmpty()) {
+        last = page.get(page.size() - 1);
+      }
+    } while (page.size() == PAGE_SIZE);
+
+    assertThat(found).isEqualTo(expected);
+  }
+
+  @Test
+  void searchByJobTitlePagesThroughEveryPetStoreInIndexOrder() {
+    List<Long> expected = employees.stream()
+        .filter(employee -> employee.getEmployeeJobTitle().startsWith("Groom"))
+        .sorted(Comparator.comparing(Employee::getEmployeeJobTitle)
+            .thenComparing(Employee::getEmployeeId))
+        .map(Employee::getEmployeeId).toList();
+    List<Long> found = new ArrayList<>();
+    PetStoreEmployee last = null;
+    List<PetStoreEmployee> page;
+
+    do {
+      page = employeeDao.searchByJobTitle("Groom%", null,
+          last == null ? null : last.getEmployeeJobTitle(),
+          last == null ? 0L : last.getEmployeeId(), PageRequest.of(0, PAGE_SIZE));
+      page.forEach(employee -> found.add(employee.getEmployeeId()));
+
+      if (!page.isEmpty()) {
+        last = page.get(page.size() - 1);
+      }
+    } while (page.size() == PAGE_SIZE);
+
+    assertThat(found).hasSize(8).isEqualTo(expected);
+  }
+
+  private PetStore persistPetStore(String name) {
+    PetStore petStore = new PetStore();
+    petStore.setPetStoreName(name);
+    return testEntityManager.persist(petStore);
+  }
+
+}
@@ -0,0 +1,109 @@
+package pet.store.dao;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
+import pet.store.controller.model.PetStoreSummary;
+import pet.store.entity.Customer;
+import pet.store.entity.Employee;
+import pet.store.entity.PetStore;
+
+/*
+ * Checks that findFullPetStoreById loads a large pet store with a fixed number of SQL statements,
+ * however many customers it has, and that the keyset paged listing returns every pet store of a
+ * city exactly once. Runs on an embedded H2 database with the schema created by Hibernate, so the
+ * Flyway migrations are turned off.
+ */
+@DataJpaTest(properties = "spring.flyway.enabled=false")
+class PetStoreDaoTest {
+
+  private static final int CUSTOMERS = 5_000;
+  private static final int EMPLOYEES = 50;
+
+  @Autowired
+  private PetStoreDao petStoreDao;
+
+  @Autowired
+  private TestEntityManager testEntityManager;
+
+  @Test
+  void findFullPetStoreByIdUsesAtMostThreeStatements() {
+    PetStore petStore = new PetStore();
+    petStore.setPetStoreName("Large Store");
+    testEntityManager.persist(petStore);
+
+    for (int i = 0; i < CUSTOMERS; i++) {
+      Customer customer = new Customer();
+      customer.setCustomerEmail("customer" + i + "@example.com");
+      testEntityManager.persist(customer);
+      petStore.getCustomers().add(customer);
+    }
+
+    for (int i = 0; i < EMPLOYEES; i++) {
+      Employee employee = new Employee();
+      employee.setEmployeeLastName("Employee" + i);
+      employee.setPetStore(petStore);
+      testEntityManager.persist(employee);
+    }
+
+    testEntityManager.flush();
+    testEntityManager.clear();
+
+    SessionFactory sessionFactory =
+        testEntityManager.getEntityManager().getEntityManagerFactory()
+            .unwrap(SessionFactory.class);
+    sessionFactory.getCache().evictAllRegions();
+    Statistics statistics = sessionFactory.getStatistics();
+    statistics.setStatisticsEnabled(true);
+    statistics.clear();
+
+    Optional<PetStore> loaded = petStoreDao.findFullPetStoreById(petStore.getPetStoreId());
+
+    assertThat(loaded).isPresent();
+    assertThat(loaded.get().getCustomers()).hasSize(CUSTOMERS);
+    assertThat(loaded.get().getEmployees()).hasSize(EMPLOYEES);
+    assertThat(statistics.getPrepareStatementCount()).isLessThanOrEqualTo(3);
+  }
+
+  @Test
+  void findSummaryPageAfterPagesThroughTheFilteredListing() {
+    List<Long> expected = new ArrayList<>();
+
+    for (int i = 0; i < 7; i++) {
+      PetStore petStore = new PetStore();
+      petStore.setPetStoreName("Store " + i);
+      petStore.setPetStoreCity(i % 3 == 0 ? "Boulder" : "Denver");
+      testEntityManager.persist(petStore);
+
+      if (i % 3 != 0) {
+        expected.add(petStore.getPetStoreId());
+      }
+    }
+    testEntityManager.flush();
+
+    List<Long> found = new ArrayList<>();
+    long afterId = 0;
+    List<PetStoreSummary> page;
+
+    do {
+      page = petStoreDao.findSummaryPageAfter(afterId, "Denver", null, null,
+          PageRequest.of(0, 2));
+      page.forEach(summary -> found.add(summary.getPetStoreId()));
+
+      if (!page.isEmpty()) {
+        afterId = page.get(page.size() - 1).getPetStoreId();
+      }
+    } while (page.size() == 2);
+
+    assertThat(found).isEqualTo(expected);
+  }
+
+}
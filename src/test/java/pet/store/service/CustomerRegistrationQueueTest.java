@@ -0,0 +1,156 @@
+package pet.store.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import pet.store.controller.model.PetStoreCustomer;
+import pet.store.dao.PetStoreDao;
+import pet.store.entity.PetStore;
+
+/*
+ * Checks the paths of the customer registration queue where a registration is not simply written:
+ * a full queue rejects it, a batch that keeps failing is written one registration at a time with
+ * only the bad one dead-lettered, and a registration whose pet store was deleted after it was
+ * accepted is dead-lettered instead of dropped. PetStoreService is mocked, so no database is used.
+ */
+class CustomerRegistrationQueueTest {
+
+  private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+  @TempDir
+  private Path tempDir;
+
+  private PetStoreService petStoreService;
+  private PetStoreDao petStoreDao;
+  private MeterRegistry meterRegistry;
+  private Path deadLetterFile;
+
+  @BeforeEach
+  void setUp() {
+    petStoreService = mock(PetStoreService.class);
+    petStoreDao = mock(PetStoreDao.class);
+    meterRegistry = new SimpleMeterRegistry();
+    deadLetterFile = tempDir.resolve("dead-letters.ndjson");
+    when(petStoreDao.findById(anyLong())).thenReturn(Optional.of(new PetStore()));
+  }
+
+  @Test
+  void submitToAFullQueueIsRejected() throws Exception {
+    CountDownLatch writing = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(petStoreService.saveNewCustomers(any())).thenAnswer(invocation -> {
+      writing.countDown();
+      release.await();
+      return List.of();
+    });
+    CustomerRegistrationQueue queue = newQueue(1, 1);
+    queue.start();
+
+    queue.submit(1L, customer("first@example.com"));
+    assertThat(writing.await(5, TimeUnit.SECONDS)).isTrue();
+    queue.submit(1L, customer("queued@example.com"));
+
+    assertThatThrownBy(() -> queue.submit(1L, customer("rejected@example.com")))
+        .isInstanceOf(CustomerQueueFullException.class);
+    assertThat(meterRegistry.counter("pet.store.customer.queue.rejected").count()).isEqualTo(1);
+
+    release.countDown();
+    queue.stop();
+  }
+
+  @Test
+  void failingBatchIsWrittenOneAtATimeAndOnlyTheBadRegistrationIsDeadLettered()
+      throws Exception {
+    when(petStoreService.saveNewCustomers(any())).thenAnswer(invocation -> {
+      Map<Long, List<PetStoreCustomer>> batch = invocation.getArgument(0);
+
+      if (batch.get(1L).stream().anyMatch(c -> c.getCustomerEmail().startsWith("bad"))) {
+        throw new IllegalStateException("Data too long for column");
+      }
+      return List.of();
+    });
+    CustomerRegistrationQueue queue = newQueue(10, 10);
+    queue.start();
+
+    queue.submit(1L, customer("good@example.com"));
+    queue.submit(1L, customer("bad@example.com"));
+    queue.stop();
+
+    verify(petStoreService).saveNewCustomers(
+        argThat(batch -> batch.get(1L).equals(List.of(customer("good@example.com")))));
+    List<JsonNode> deadLetters = readDeadLetters();
+    assertThat(deadLetters).hasSize(1);
+    assertThat(deadLetters.get(0).get("customer").get("customerEmail").asText())
+        .isEqualTo("bad@example.com");
+    assertThat(deadLetters.get(0).get("reason").asText()).isEqualTo("write-failed");
+    assertThat(deadLetterCount("write-failed")).isEqualTo(1);
+  }
+
+  @Test
+  void registrationOfADeletedPetStoreIsDeadLettered() throws Exception {
+    when(petStoreService.saveNewCustomers(any())).thenReturn(List.of(2L));
+    CustomerRegistrationQueue queue = newQueue(10, 10);
+    queue.start();
+
+    queue.submit(1L, customer("kept@example.com"));
+    queue.submit(2L, customer("orphan@example.com"));
+    queue.stop();
+
+    List<JsonNode> deadLetters = readDeadLetters();
+    assertThat(deadLetters).hasSize(1);
+    assertThat(deadLetters.get(0).get("petStoreId").asLong()).isEqualTo(2L);
+    assertThat(deadLetters.get(0).get("customer").get("customerEmail").asText())
+        .isEqualTo("orphan@example.com");
+    assertThat(deadLetters.get(0).get("reason").asText()).isEqualTo("pet-store-missing");
+    assertThat(deadLetterCount("pet-store-missing")).isEqualTo(1);
+  }
+
+  private CustomerRegistrationQueue newQueue(int capacity, int batchSize) {
+    return new CustomerRegistrationQueue(petStoreService, petStoreDao, meterRegistry,
+        OBJECT_MAPPER, capacity, batchSize, Duration.ofMillis(50), deadLetterFile);
+  }
+
+  private List<JsonNode> readDeadLetters() throws Exception {
+    if (!Files.exists(deadLetterFile)) {
+      return List.of();
+    }
+
+    List<JsonNode> lines = new ArrayList<>();
+
+    for (String line : Files.readAllLines(deadLetterFile)) {
+      lines.add(OBJECT_MAPPER.readTree(line));
+    }
+    return lines;
+  }
+
+  private double deadLetterCount(String reason) {
+    return meterRegistry.counter("pet.store.customer.queue.dead.letters", "reason", reason)
+        .count();
+  }
+
+  private static PetStoreCustomer customer(String email) {
+    return new PetStoreCustomer(null, "First", "Last", email);
+  }
+
+}